@@ -0,0 +1,107 @@
+package com.andrewpmsmith.movabletype.benchmark;
+
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.CaptureEngine;
+import com.andrewpmsmith.movabletype.model.CaptureTracker;
+
+/**
+ * Compares the time per turn of the CaptureTracker and of the CaptureEngine,
+ * which checks the whole board, as the board grows. The tracker's time should
+ * stay about the same, since it depends on the length of the word.
+ *
+ * Usage: BoardSizeBenchmark
+ */
+public final class BoardSizeBenchmark {
+
+	private static final int[] SIZES = { 5, 15, 64 };
+	private static final int WORD_LENGTH = 6;
+	private static final int TURNS = 100000;
+	private static final int RUNS = 2;
+
+	public static void main(String[] args) {
+
+		for (int size : SIZES) {
+
+			int tiles = size * size;
+			int turnsPerGame = Math.min(tiles, 200);
+
+			// The same words for both, chosen in advance
+			Random r = new Random(20);
+			int[] words = new int[TURNS * WORD_LENGTH];
+			for (int i = 0; i < words.length; ++i) {
+				words[i] = r.nextInt(tiles);
+			}
+
+			CaptureEngine engine = new CaptureEngine(size, size);
+			long trackerTime = 0;
+			long engineTime = 0;
+
+			// The first runs warm up the JIT
+			for (int run = 0; run < RUNS; ++run) {
+
+				trackerTime = 0;
+				engineTime = 0;
+
+				for (int first = 0; first < TURNS; first += turnsPerGame) {
+
+					int last = Math.min(TURNS, first + turnsPerGame);
+
+					long[][] masks = new long[4][engine.getMaskLength()];
+					CaptureTracker tracker = new CaptureTracker(size, size,
+							masks[0], masks[1], masks[2], masks[3]);
+					tracker.makeCaptures();
+
+					long start = System.nanoTime();
+					for (int turn = first; turn < last; ++turn) {
+						int player = (turn % 2 == 0) ? CaptureTracker.PLAYER1
+								: CaptureTracker.PLAYER2;
+						for (int i = 0; i < WORD_LENGTH; ++i) {
+							int tile = words[turn * WORD_LENGTH + i];
+							if (!get(masks[2], tile) && !get(masks[3], tile))
+								tracker.claim(tile, player);
+						}
+						tracker.makeCaptures();
+					}
+					trackerTime += System.nanoTime() - start;
+
+					masks = new long[4][engine.getMaskLength()];
+
+					start = System.nanoTime();
+					for (int turn = first; turn < last; ++turn) {
+						long[] owned = masks[turn % 2];
+						long[] other = masks[1 - turn % 2];
+						for (int i = 0; i < WORD_LENGTH; ++i) {
+							int tile = words[turn * WORD_LENGTH + i];
+							if (!get(masks[2], tile) && !get(masks[3], tile)) {
+								owned[tile / 64] |= 1L << tile;
+								other[tile / 64] &= ~(1L << tile);
+							}
+						}
+						engine.makeCaptures(masks[0], masks[1], masks[2],
+								masks[3]);
+					}
+					engineTime += System.nanoTime() - start;
+
+				}
+			}
+
+			System.out.println(String.format(
+					"%dx%d: tracker %.0f ns/turn, engine %.0f ns/turn", size,
+					size, (double) trackerTime / TURNS, (double) engineTime
+							/ TURNS));
+
+		}
+
+	}
+
+	private static boolean get(long[] mask, int tile) {
+		return (mask[tile / 64] & (1L << tile)) != 0;
+	}
+
+	// Suppress default constructor for noninstantiability
+	private BoardSizeBenchmark() {
+		throw new AssertionError();
+	}
+
+}
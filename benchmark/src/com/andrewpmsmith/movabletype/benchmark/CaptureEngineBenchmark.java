@@ -0,0 +1,165 @@
+package com.andrewpmsmith.movabletype.benchmark;
+
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.CaptureEngine;
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+
+/**
+ * Compares the number of turns' captures per second of the CaptureEngine and
+ * of the tile by tile scan that GameModel used before it, on boards of the
+ * standard size.
+ *
+ * Usage: CaptureEngineBenchmark
+ */
+public final class CaptureEngineBenchmark {
+
+	private static final LetterState[] STATES = LetterState.values();
+	private static final int BOARDS = 256;
+	private static final int TURNS = 200000;
+	private static final int RUNS = 2;
+
+	public static void main(String[] args) {
+
+		Random r = new Random(17);
+		CaptureEngine engine = new CaptureEngine(GameModel.GRID_COLUMNS,
+				GameModel.GRID_ROWS);
+		int tiles = engine.getTileCount();
+
+		LetterState[][] grids = new LetterState[BOARDS][];
+		long[][] masks = new long[BOARDS][];
+		for (int i = 0; i < BOARDS; ++i) {
+			grids[i] = randomGrid(r, tiles);
+			masks[i] = new long[2];
+			for (int j = 0; j < tiles; ++j) {
+				if (owner(grids[i][j]) == 1)
+					masks[i][0] |= 1L << j;
+				if (owner(grids[i][j]) == -1)
+					masks[i][1] |= 1L << j;
+			}
+		}
+
+		long[] player1Owned = new long[1];
+		long[] player2Owned = new long[1];
+		long[] player1Surrounded = new long[1];
+		long[] player2Surrounded = new long[1];
+
+		LetterState[] grid = new LetterState[tiles];
+		long engineTime = 0;
+		long referenceTime = 0;
+
+		// The first runs warm up the JIT
+		for (int run = 0; run < RUNS; ++run) {
+
+			long start = System.nanoTime();
+			for (int i = 0; i < TURNS; ++i) {
+				long[] board = masks[i % BOARDS];
+				player1Owned[0] = board[0];
+				player2Owned[0] = board[1];
+				player1Surrounded[0] = 0;
+				player2Surrounded[0] = 0;
+				engine.makeCaptures(player1Owned, player2Owned,
+						player1Surrounded, player2Surrounded);
+			}
+			engineTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < TURNS; ++i) {
+				System.arraycopy(grids[i % BOARDS], 0, grid, 0, tiles);
+				referenceCaptures(grid, GameModel.GRID_COLUMNS);
+			}
+			referenceTime = System.nanoTime() - start;
+
+		}
+
+		System.out.println(String.format(
+				"engine %.0f turns/s, reference %.0f turns/s", TURNS * 1e9
+						/ engineTime, TURNS * 1e9 / referenceTime));
+
+	}
+
+	/*
+	 * The tile by tile capture scan that GameModel used before the engine,
+	 * for a board of any width. Returns the change in player 1's score minus
+	 * the change in player 2's.
+	 */
+	private static int referenceCaptures(LetterState[] grid, int columns) {
+
+		int scoreChange = 0;
+
+		for (int tile = 0; tile < grid.length; ++tile) {
+
+			LetterState currentTileState = grid[tile];
+
+			final int left = tile - 1;
+			final int right = tile + 1;
+			final int above = tile - columns;
+			final int below = tile + columns;
+
+			LetterState[] surrounding = new LetterState[4];
+
+			surrounding[0] = (left >= 0 && left % columns < tile % columns) ? grid[left]
+					: null;
+			surrounding[1] = (tile % columns < right % columns) ? grid[right]
+					: null;
+			surrounding[2] = (above >= 0) ? grid[above] : null;
+			surrounding[3] = (below < grid.length) ? grid[below] : null;
+
+			boolean player1Surrounded = true;
+			boolean player2Surrounded = true;
+
+			for (int i = 0; i < 4; ++i) {
+				player1Surrounded &= (surrounding[i] == null
+						|| surrounding[i] == LetterState.PLAYER1_OWNED || surrounding[i] == LetterState.PLAYER1_SURROUNDED);
+				player2Surrounded &= (surrounding[i] == null
+						|| surrounding[i] == LetterState.PLAYER2_OWNED || surrounding[i] == LetterState.PLAYER2_SURROUNDED);
+			}
+
+			int oldOwner = owner(grid[tile]);
+			if (player1Surrounded) {
+				grid[tile] = LetterState.PLAYER1_SURROUNDED;
+			} else if (currentTileState == LetterState.PLAYER1_SURROUNDED) {
+				grid[tile] = LetterState.PLAYER1_OWNED;
+			} else if (player2Surrounded) {
+				grid[tile] = LetterState.PLAYER2_SURROUNDED;
+			} else if (currentTileState == LetterState.PLAYER2_SURROUNDED) {
+				grid[tile] = LetterState.PLAYER2_OWNED;
+			}
+			scoreChange += owner(grid[tile]) - oldOwner;
+		}
+
+		return scoreChange;
+
+	}
+
+	private static int owner(LetterState state) {
+		switch (state) {
+		case PLAYER1_SURROUNDED:
+		case PLAYER1_OWNED:
+			return 1;
+		case PLAYER2_SURROUNDED:
+		case PLAYER2_OWNED:
+			return -1;
+		default:
+			return 0;
+		}
+	}
+
+	private static LetterState[] randomGrid(Random r, int tiles) {
+		// Mostly owned tiles, so that captures are common
+		LetterState[] grid = new LetterState[tiles];
+		for (int i = 0; i < tiles; ++i) {
+			grid[i] = (r.nextInt(4) == 0) ? STATES[r.nextInt(STATES.length)]
+					: (r.nextBoolean() ? LetterState.PLAYER1_OWNED
+							: LetterState.PLAYER2_OWNED);
+		}
+		return grid;
+	}
+
+	// Suppress default constructor for noninstantiability
+	private CaptureEngineBenchmark() {
+		throw new AssertionError();
+	}
+
+}
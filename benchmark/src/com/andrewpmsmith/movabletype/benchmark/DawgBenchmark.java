@@ -0,0 +1,100 @@
+package com.andrewpmsmith.movabletype.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.WordListReader;
+import com.andrewpmsmith.movabletype.model.WordTrie;
+
+/**
+ * Compares a WordTrie holding the whole word list with the Dawg that
+ * WordTrie.freeze() makes from it: the number of nodes, the heap each uses,
+ * and the time a lookup takes.
+ *
+ * Usage: DawgBenchmark [wordlist.txt]
+ */
+public final class DawgBenchmark {
+
+	private static final String DEFAULT_WORD_LIST = "res/raw/wordlist.txt";
+	private static final int LOOKUPS = 1000000;
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws IOException {
+
+		String path = (args.length > 0) ? args[0] : DEFAULT_WORD_LIST;
+		List<String> words = WordListReader.readWords(new FileInputStream(
+				path));
+
+		long baseBytes = Memory.used();
+
+		WordTrie trie = new WordTrie();
+		for (String word : words) {
+			trie.add(word);
+		}
+		long trieBytes = Memory.used() - baseBytes;
+
+		long start = System.nanoTime();
+		Dawg dawg = trie.freeze();
+		long freezeTime = System.nanoTime() - start;
+		long dawgBytes = Memory.used() - baseBytes - trieBytes;
+
+		// Half words, half strings with the last letter changed, most of
+		// which are not words
+		Random r = new Random(11);
+		String[] queries = new String[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; ++i) {
+			String word = words.get(r.nextInt(words.size()));
+			if (i % 2 == 1)
+				word = word.substring(0, word.length() - 1)
+						+ (char) ('A' + r.nextInt(26));
+			queries[i] = word;
+		}
+
+		long trieTime = 0;
+		long dawgTime = 0;
+
+		// The first runs warm up the JIT
+		for (int run = 0; run < RUNS; ++run) {
+
+			int trieFound = 0;
+			start = System.nanoTime();
+			for (String query : queries) {
+				if (trie.contains(query))
+					++trieFound;
+			}
+			trieTime = System.nanoTime() - start;
+
+			int dawgFound = 0;
+			start = System.nanoTime();
+			for (String query : queries) {
+				if (dawg.wordInDictionary(query))
+					++dawgFound;
+			}
+			dawgTime = System.nanoTime() - start;
+
+			if (trieFound != dawgFound)
+				throw new IllegalStateException("The trie found " + trieFound
+						+ " words but the Dawg found " + dawgFound);
+		}
+
+		System.out.println(String.format("%d words, frozen in %.0f ms",
+				words.size(), freezeTime / 1e6));
+		System.out.println(String.format(
+				"trie: %d nodes, %d heap bytes, %.0f ns/lookup",
+				trie.getNodeCount(), trieBytes, (double) trieTime / LOOKUPS));
+		System.out.println(String.format(
+				"dawg: %d nodes, %d edges, %d heap bytes, %.0f ns/lookup",
+				dawg.getNodeCount(), dawg.getEdgeCount(), dawgBytes,
+				(double) dawgTime / LOOKUPS));
+
+	}
+
+	// Suppress default constructor for noninstantiability
+	private DawgBenchmark() {
+		throw new AssertionError();
+	}
+
+}
@@ -0,0 +1,36 @@
+package com.andrewpmsmith.movabletype.benchmark;
+
+/**
+ * Measures the heap in use, for benchmarks that report the size of the
+ * structures they build.
+ */
+final class Memory {
+
+	private static final int GC_RUNS = 4;
+
+	/*
+	 * Returns the bytes of heap in use once garbage has been collected. The
+	 * result is only approximate, since System.gc() is a request.
+	 */
+	static long used() {
+
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < GC_RUNS; ++i) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+
+	}
+
+	// Suppress default constructor for noninstantiability
+	private Memory() {
+		throw new AssertionError();
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A skeletal Dictionary implementation whose batch lookup checks each word in
+ * turn. Dictionaries that can look words up more efficiently in bulk should
+ * override lookupAll(..).
+ */
+public abstract class AbstractDictionary implements Dictionary {
+
+	@Override
+	public Set<String> lookupAll(Collection<String> words) {
+
+		Set<String> found = new HashSet<String>();
+
+		for (String word : words) {
+			if (wordInDictionary(word))
+				found.add(word);
+		}
+
+		return found;
+
+	}
+
+}
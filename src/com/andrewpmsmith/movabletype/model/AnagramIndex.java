@@ -0,0 +1,284 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of dictionary words keyed by their letter multiset, used to find
+ * every word that can be made from a set of letters, such as the letters on
+ * the game grid.
+ *
+ * Each word is reduced to a signature made of its letters in sorted order, so
+ * all anagrams share a signature. The signatures are stored in a trie with the
+ * same array layout as Dawg: a 26 bit child mask per node and contiguous edge
+ * lists indexed by bit counting. Each node that ends a signature refers to a
+ * range of the words array. Because signatures are sorted, finding every word
+ * that fits in a multiset of letters is a single depth first traversal that
+ * only follows edges for letters that are still available.
+ *
+ * Instances are created with an AnagramIndex.Builder.
+ */
+public final class AnagramIndex {
+
+	private static final int FIRST_CHAR = Dawg.FIRST_CHAR;
+	private static final int ALPHABET_SIZE = Dawg.ALPHABET_SIZE;
+	private static final int ROOT = 0;
+
+	private final int[] mNodeMasks;
+	private final int[] mFirstEdges;
+	private final int[] mEdges;
+	private final int[] mFirstWords;
+	private final String[] mWords;
+
+	private AnagramIndex(int[] nodeMasks, int[] firstEdges, int[] edges,
+			int[] firstWords, String[] words) {
+		mNodeMasks = nodeMasks;
+		mFirstEdges = firstEdges;
+		mEdges = edges;
+		mFirstWords = firstWords;
+		mWords = words;
+	}
+
+	public int getWordCount() {
+		return mWords.length;
+	}
+
+	public int getNodeCount() {
+		return mNodeMasks.length;
+	}
+
+	/**
+	 * Pass every word that can be made from the given letters to the visitor.
+	 * Each letter may be used as many times as it is counted.
+	 *
+	 * @param letterCounts
+	 *            the number of each letter available, indexed from 'A'. The
+	 *            array is not modified.
+	 * @return false if the visitor stopped the search early.
+	 */
+	public boolean findWords(int[] letterCounts, WordVisitor visitor) {
+
+		int[] counts = new int[ALPHABET_SIZE];
+		int available = 0;
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			counts[i] = letterCounts[i];
+			if (counts[i] > 0)
+				available |= 1 << i;
+		}
+
+		return findWords(ROOT, counts, available, visitor);
+
+	}
+
+	/**
+	 * Find every word that can be made from the given letters.
+	 */
+	public List<String> findWords(int[] letterCounts) {
+
+		final List<String> words = new ArrayList<String>();
+
+		findWords(letterCounts, new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				words.add(word);
+				return true;
+			}
+
+		});
+
+		return words;
+
+	}
+
+	private boolean findWords(int node, int[] counts, int available,
+			WordVisitor visitor) {
+
+		for (int i = mFirstWords[node]; i < mFirstWords[node + 1]; ++i) {
+			if (!visitor.visitWord(mWords[i]))
+				return false;
+		}
+
+		int mask = mNodeMasks[node];
+		int candidates = mask & available;
+
+		while (candidates != 0) {
+
+			int bit = candidates & -candidates;
+			candidates &= ~bit;
+			int letter = Integer.numberOfTrailingZeros(bit);
+
+			int child = mEdges[mFirstEdges[node]
+					+ Integer.bitCount(mask & (bit - 1))];
+
+			// Signatures are sorted, so letters before this one can no longer
+			// appear below the child
+			int childAvailable = available & ~(bit - 1);
+			if (--counts[letter] == 0)
+				childAvailable &= ~bit;
+
+			boolean more = findWords(child, counts, childAvailable, visitor);
+			++counts[letter];
+
+			if (!more)
+				return false;
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Get the signature of a word: its letters in sorted order.
+	 */
+	static String signature(String word) {
+		char[] letters = word.toCharArray();
+		Arrays.sort(letters);
+		return new String(letters);
+	}
+
+	/**
+	 * Collects words and builds an AnagramIndex. Words may be added in any
+	 * order.
+	 */
+	public static final class Builder {
+
+		private final List<String> mWords = new ArrayList<String>();
+
+		/**
+		 * @return true if the word was added, false if it contains characters
+		 *         other than A to Z.
+		 */
+		public boolean add(String word) {
+			if (!WordListReader.isUpperCaseWord(word))
+				return false;
+			mWords.add(word);
+			return true;
+		}
+
+		public AnagramIndex build() {
+
+			// Sort the words by signature so that each signature's words are
+			// contiguous and signatures arrive in trie order
+			int wordCount = mWords.size();
+			Entry[] entries = new Entry[wordCount];
+			for (int i = 0; i < wordCount; ++i) {
+				String word = mWords.get(i);
+				entries[i] = new Entry(signature(word), word);
+			}
+			Arrays.sort(entries);
+
+			String[] words = new String[wordCount];
+			for (int i = 0; i < wordCount; ++i) {
+				words[i] = entries[i].mWord;
+			}
+
+			// Build the signature trie
+			Node root = new Node();
+			List<Node> path = new ArrayList<Node>();
+			path.add(root);
+			String previous = "";
+
+			for (int i = 0; i < wordCount; ++i) {
+				String signature = entries[i].mSignature;
+				if (signature.equals(previous))
+					continue;
+
+				int common = 0;
+				int length = Math.min(signature.length(), previous.length());
+				while (common < length
+						&& signature.charAt(common) == previous.charAt(common)) {
+					++common;
+				}
+				while (path.size() > common + 1) {
+					path.remove(path.size() - 1);
+				}
+
+				Node node = path.get(common);
+				for (int j = common; j < signature.length(); ++j) {
+					Node next = new Node();
+					node.mChildren.add(next);
+					node.mMask |= 1 << (signature.charAt(j) - FIRST_CHAR);
+					path.add(next);
+					node = next;
+				}
+				node.mFirstWord = i;
+				previous = signature;
+			}
+
+			// Number the nodes in depth first pre-order, which visits the
+			// signatures in sorted order. A node's words then end where the
+			// words of the next node with a signature begin.
+			List<Node> nodes = new ArrayList<Node>();
+			List<Node> stack = new ArrayList<Node>();
+			stack.add(root);
+			while (!stack.isEmpty()) {
+				Node node = stack.remove(stack.size() - 1);
+				node.mId = nodes.size();
+				nodes.add(node);
+				for (int j = node.mChildren.size() - 1; j >= 0; --j) {
+					stack.add(node.mChildren.get(j));
+				}
+			}
+
+			int nodeCount = nodes.size();
+			int[] nodeMasks = new int[nodeCount];
+			int[] firstEdges = new int[nodeCount];
+			int[] edges = new int[nodeCount - 1];
+			int[] firstWords = new int[nodeCount + 1];
+
+			int edge = 0;
+			for (int i = 0; i < nodeCount; ++i) {
+				Node node = nodes.get(i);
+				nodeMasks[i] = node.mMask;
+				firstEdges[i] = edge;
+				for (Node child : node.mChildren) {
+					edges[edge++] = child.mId;
+				}
+				firstWords[i] = node.mFirstWord;
+			}
+
+			firstWords[nodeCount] = wordCount;
+			for (int i = nodeCount - 1; i >= 0; --i) {
+				if (firstWords[i] == Node.NO_WORDS)
+					firstWords[i] = firstWords[i + 1];
+			}
+
+			return new AnagramIndex(nodeMasks, firstEdges, edges, firstWords,
+					words);
+
+		}
+
+		private static final class Entry implements Comparable<Entry> {
+
+			final String mSignature;
+			final String mWord;
+
+			public Entry(String signature, String word) {
+				mSignature = signature;
+				mWord = word;
+			}
+
+			@Override
+			public int compareTo(Entry another) {
+				int order = mSignature.compareTo(another.mSignature);
+				return (order != 0) ? order : mWord.compareTo(another.mWord);
+			}
+
+		}
+
+		private static final class Node {
+
+			static final int NO_WORDS = -1;
+
+			int mMask;
+			int mFirstWord = NO_WORDS;
+			int mId;
+			final List<Node> mChildren = new ArrayList<Node>(2);
+
+		}
+
+	} // class Builder
+
+}
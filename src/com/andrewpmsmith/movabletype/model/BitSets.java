@@ -0,0 +1,115 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * Operations on sets of tiles stored as bit masks, one bit per tile in an
+ * array of longs, so that boards of any size can be represented. Bit i of
+ * the set is bit (i % 64) of element (i / 64).
+ */
+final class BitSets {
+
+	static final int BITS_PER_WORD = 64;
+
+	private BitSets() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * @return an empty set large enough to hold the given number of bits.
+	 */
+	static long[] create(int bits) {
+		return new long[length(bits)];
+	}
+
+	/**
+	 * @return the number of longs in a set that holds the given number of
+	 *         bits.
+	 */
+	static int length(int bits) {
+		return (bits + BITS_PER_WORD - 1) / BITS_PER_WORD;
+	}
+
+	static boolean get(long[] set, int bit) {
+		return (set[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	static void set(long[] set, int bit) {
+		set[bit >>> 6] |= 1L << bit;
+	}
+
+	static void clear(long[] set, int bit) {
+		set[bit >>> 6] &= ~(1L << bit);
+	}
+
+	/**
+	 * @return the index of the first bit set at or after the given index, or
+	 *         -1 if there is none.
+	 */
+	static int nextSetBit(long[] set, int from) {
+
+		int i = from >>> 6;
+		if (i >= set.length)
+			return -1;
+
+		long word = set[i] & (-1L << from);
+		while (word == 0) {
+			if (++i == set.length)
+				return -1;
+			word = set[i];
+		}
+
+		return i * BITS_PER_WORD + Long.numberOfTrailingZeros(word);
+
+	}
+
+	/**
+	 * Move every bit up by the given distance, so that bit i of the result
+	 * is bit (i - distance) of the source. The arrays must be the same
+	 * length and must not be the same array.
+	 */
+	static void shiftUp(long[] source, int distance, long[] result) {
+
+		int words = distance >>> 6;
+		int bits = distance & 63;
+
+		for (int i = result.length - 1; i >= 0; --i) {
+			int j = i - words;
+			long word = (j >= 0) ? source[j] << bits : 0;
+			if (bits != 0 && j > 0)
+				word |= source[j - 1] >>> (BITS_PER_WORD - bits);
+			result[i] = word;
+		}
+
+	}
+
+	/**
+	 * Move every bit down by the given distance, so that bit i of the result
+	 * is bit (i + distance) of the source. The arrays must be the same
+	 * length and must not be the same array.
+	 */
+	static void shiftDown(long[] source, int distance, long[] result) {
+
+		int words = distance >>> 6;
+		int bits = distance & 63;
+
+		for (int i = 0; i < result.length; ++i) {
+			int j = i + words;
+			long word = (j < source.length) ? source[j] >>> bits : 0;
+			if (bits != 0 && j + 1 < source.length)
+				word |= source[j + 1] << (BITS_PER_WORD - bits);
+			result[i] = word;
+		}
+
+	}
+
+	/**
+	 * @return the number of bits set.
+	 */
+	static int count(long[] set) {
+		int count = 0;
+		for (long word : set) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A Bloom filter over words. It answers "definitely not present" or "possibly
+ * present", with a false positive rate chosen when the filter is created.
+ *
+ * Each word is hashed once to 64 bits, and the bit positions are derived from
+ * the two halves of that hash by double hashing, so a query touches at most
+ * getHashCount() bits and allocates nothing.
+ */
+public final class BloomFilter {
+
+	private static final int MAGIC = 0x4d544246; // "MTBF"
+	private static final int FORMAT_VERSION = 1;
+	private static final int MAX_HASH_COUNT = 16;
+
+	private final long[] mBits;
+	private final long mBitCount;
+	private final int mHashCount;
+
+	private BloomFilter(long[] bits, int hashCount) {
+		mBits = bits;
+		mBitCount = (long) bits.length * Long.SIZE;
+		mHashCount = hashCount;
+	}
+
+	/**
+	 * Create an empty filter sized to hold the given number of words with the
+	 * given false positive rate.
+	 *
+	 * @param falsePositiveRate
+	 *            the probability that a word that was never added is reported
+	 *            as possibly present, between 0 and 1 exclusive.
+	 */
+	public static BloomFilter create(int expectedWords,
+			double falsePositiveRate) {
+
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+			throw new IllegalArgumentException("Invalid false positive rate "
+					+ falsePositiveRate);
+
+		int n = Math.max(1, expectedWords);
+		double ln2 = Math.log(2);
+		long bitCount = (long) Math.ceil(-n * Math.log(falsePositiveRate)
+				/ (ln2 * ln2));
+		int hashCount = (int) Math.round((double) bitCount / n * ln2);
+		hashCount = Math.max(1, Math.min(MAX_HASH_COUNT, hashCount));
+
+		int words = (int) ((bitCount + Long.SIZE - 1) / Long.SIZE);
+		return new BloomFilter(new long[words], hashCount);
+
+	}
+
+	public void add(CharSequence word) {
+
+		long hash = hash(word);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+
+		for (int i = 0; i < mHashCount; ++i) {
+			long bit = ((h1 + i * h2) & 0xffffffffL) % mBitCount;
+			mBits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+
+	}
+
+	/**
+	 * @return false if the word was definitely never added, true if it may
+	 *         have been.
+	 */
+	public boolean mightContain(CharSequence word) {
+
+		if (word == null)
+			return false;
+
+		long hash = hash(word);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+
+		for (int i = 0; i < mHashCount; ++i) {
+			long bit = ((h1 + i * h2) & 0xffffffffL) % mBitCount;
+			if ((mBits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+				return false;
+		}
+
+		return true;
+
+	}
+
+	public int getHashCount() {
+		return mHashCount;
+	}
+
+	public long getBitCount() {
+		return mBitCount;
+	}
+
+	/**
+	 * Read a filter previously saved with write(..). The stream is not
+	 * closed.
+	 *
+	 * @throws IOException
+	 *             if the stream cannot be read or is not in a supported
+	 *             format.
+	 */
+	public static BloomFilter read(InputStream is) throws IOException {
+
+		DataInputStream in = new DataInputStream(is);
+
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a Bloom filter file");
+		int version = in.readInt();
+		if (version != FORMAT_VERSION)
+			throw new IOException("Unsupported Bloom filter version "
+					+ version);
+
+		int hashCount = in.readInt();
+		int words = in.readInt();
+		if (hashCount < 1 || words < 1)
+			throw new IOException("Corrupt Bloom filter");
+
+		byte[] bytes = new byte[words * 8];
+		in.readFully(bytes);
+		long[] bits = new long[words];
+		ByteBuffer.wrap(bytes).asLongBuffer().get(bits);
+
+		return new BloomFilter(bits, hashCount);
+
+	}
+
+	/**
+	 * Write this filter in a versioned binary format that can be loaded with
+	 * read(..). The stream is not closed.
+	 */
+	public void write(OutputStream os) throws IOException {
+
+		DataOutputStream out = new DataOutputStream(os);
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(mHashCount);
+		out.writeInt(mBits.length);
+
+		ByteBuffer buffer = ByteBuffer.allocate(mBits.length * 8);
+		buffer.asLongBuffer().put(mBits);
+		out.write(buffer.array());
+
+		out.flush();
+
+	}
+
+	/*
+	 * 64 bit FNV-1a over the characters, followed by the MurmurHash3
+	 * finaliser so that both halves of the result are well mixed.
+	 */
+	private static long hash(CharSequence word) {
+
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < word.length(); ++i) {
+			hash ^= word.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+
+		return hash;
+
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Dictionary that checks a Bloom filter before consulting a slower
+ * dictionary, so that words that are definitely not present never reach it.
+ *
+ * Counters record how many lookups the filter rejected and how many passed
+ * the filter but were not found (false positives). These can be used to
+ * choose a false positive rate that balances the filter's memory against the
+ * cost of the lookups it lets through.
+ */
+public class BloomFilteredDictionary implements Dictionary {
+
+	private final BloomFilter mFilter;
+	private final Dictionary mDictionary;
+
+	private final AtomicLong mQueries = new AtomicLong();
+	private final AtomicLong mRejected = new AtomicLong();
+	private final AtomicLong mFalsePositives = new AtomicLong();
+
+	public BloomFilteredDictionary(BloomFilter filter, Dictionary dictionary) {
+		mFilter = filter;
+		mDictionary = dictionary;
+	}
+
+	@Override
+	public boolean wordInDictionary(CharSequence word) {
+
+		mQueries.incrementAndGet();
+
+		if (!mFilter.mightContain(word)) {
+			mRejected.incrementAndGet();
+			return false;
+		}
+
+		boolean found = mDictionary.wordInDictionary(word);
+		if (!found)
+			mFalsePositives.incrementAndGet();
+
+		return found;
+
+	}
+
+	/**
+	 * Filter the words and pass only those that may be present on to the
+	 * wrapped dictionary's batch lookup.
+	 */
+	@Override
+	public Set<String> lookupAll(Collection<String> words) {
+
+		List<String> candidates = new ArrayList<String>(words.size());
+		for (String word : words) {
+			if (mFilter.mightContain(word))
+				candidates.add(word);
+		}
+
+		Set<String> found = mDictionary.lookupAll(candidates);
+
+		// Count per candidate, as the input may contain duplicates
+		int falsePositives = 0;
+		for (String candidate : candidates) {
+			if (!found.contains(candidate))
+				++falsePositives;
+		}
+
+		mQueries.addAndGet(words.size());
+		mRejected.addAndGet(words.size() - candidates.size());
+		mFalsePositives.addAndGet(falsePositives);
+
+		return found;
+
+	}
+
+	public Dictionary getDictionary() {
+		return mDictionary;
+	}
+
+	/**
+	 * @return the total number of lookups.
+	 */
+	public long getQueryCount() {
+		return mQueries.get();
+	}
+
+	/**
+	 * @return the number of lookups answered by the filter alone.
+	 */
+	public long getRejectedCount() {
+		return mRejected.get();
+	}
+
+	/**
+	 * @return the number of lookups that passed the filter but were not in
+	 *         the dictionary.
+	 */
+	public long getFalsePositiveCount() {
+		return mFalsePositives.get();
+	}
+
+	public void resetCounts() {
+		mQueries.set(0);
+		mRejected.set(0);
+		mFalsePositives.set(0);
+	}
+
+}
@@ -0,0 +1,171 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * Finds the tiles captured after a turn for a whole board at once, using bit
+ * masks with one bit per tile in the layout used by BitSets.
+ *
+ * A tile is surrounded by a player if every neighbour to its left, right,
+ * above and below is owned by that player; the edge of the board counts as
+ * owned by both players. The neighbours are found by shifting the ownership
+ * masks by one tile and by one row, and masking off the tiles whose
+ * neighbour would wrap around the edge of the board.
+ *
+ * The result is exactly that of visiting the tiles one at a time in index
+ * order and updating each in place, as the game has always done. Each tile
+ * therefore sees the new owners of the tiles to its left and above and the
+ * old owners of those to its right and below. The masks are recomputed
+ * until they stop changing, which usually takes one or two passes since a
+ * change only spreads to the right or downwards while it captures tiles.
+ *
+ * An engine holds its working masks, so it allocates nothing after it is
+ * constructed, and must not be used by more than one thread at a time.
+ */
+public final class CaptureEngine {
+
+	private final int mColumns;
+	private final int mTiles;
+
+	private final long[] mFirstColumn;
+	private final long[] mLastColumn;
+	private final long[] mFirstRow;
+	private final long[] mLastRow;
+	private final long[] mBoard;
+
+	private final long[] mPlayer1Fixed;
+	private final long[] mPlayer2Fixed;
+	private final long[] mPlayer1Owned;
+	private final long[] mPlayer2Owned;
+	private final long[] mPlayer1Surrounded;
+	private final long[] mPlayer2Surrounded;
+	private final long[] mHorizontal;
+	private final long[] mVertical;
+
+	public CaptureEngine(int columns, int rows) {
+
+		if (columns < 1 || rows < 1)
+			throw new IllegalArgumentException("Invalid board size " + columns
+					+ "x" + rows);
+
+		mColumns = columns;
+		mTiles = columns * rows;
+
+		mFirstColumn = BitSets.create(mTiles);
+		mLastColumn = BitSets.create(mTiles);
+		mFirstRow = BitSets.create(mTiles);
+		mLastRow = BitSets.create(mTiles);
+		mBoard = BitSets.create(mTiles);
+
+		for (int tile = 0; tile < mTiles; ++tile) {
+			int column = tile % columns;
+			if (column == 0)
+				BitSets.set(mFirstColumn, tile);
+			if (column == columns - 1)
+				BitSets.set(mLastColumn, tile);
+			if (tile < columns)
+				BitSets.set(mFirstRow, tile);
+			if (tile >= mTiles - columns)
+				BitSets.set(mLastRow, tile);
+			BitSets.set(mBoard, tile);
+		}
+
+		mPlayer1Fixed = BitSets.create(mTiles);
+		mPlayer2Fixed = BitSets.create(mTiles);
+		mPlayer1Owned = BitSets.create(mTiles);
+		mPlayer2Owned = BitSets.create(mTiles);
+		mPlayer1Surrounded = BitSets.create(mTiles);
+		mPlayer2Surrounded = BitSets.create(mTiles);
+		mHorizontal = BitSets.create(mTiles);
+		mVertical = BitSets.create(mTiles);
+
+	}
+
+	/**
+	 * @return the number of longs in each mask.
+	 */
+	public int getMaskLength() {
+		return mBoard.length;
+	}
+
+	public int getTileCount() {
+		return mTiles;
+	}
+
+	/**
+	 * Update the masks for the tiles captured or released. The owned masks
+	 * include the surrounded tiles, and no tile may be owned by both
+	 * players.
+	 */
+	public void makeCaptures(long[] player1Owned, long[] player2Owned,
+			long[] player1Surrounded, long[] player2Surrounded) {
+
+		final int length = mBoard.length;
+
+		// Whether the neighbours to the right and below are owned, which
+		// does not change as the tiles are visited
+		BitSets.shiftDown(player1Owned, 1, mHorizontal);
+		BitSets.shiftDown(player1Owned, mColumns, mVertical);
+		for (int i = 0; i < length; ++i) {
+			mPlayer1Fixed[i] = (mLastColumn[i] | mHorizontal[i])
+					& (mLastRow[i] | mVertical[i]) & mBoard[i];
+		}
+		BitSets.shiftDown(player2Owned, 1, mHorizontal);
+		BitSets.shiftDown(player2Owned, mColumns, mVertical);
+		for (int i = 0; i < length; ++i) {
+			mPlayer2Fixed[i] = (mLastColumn[i] | mHorizontal[i])
+					& (mLastRow[i] | mVertical[i]) & mBoard[i];
+		}
+
+		System.arraycopy(player1Owned, 0, mPlayer1Owned, 0, length);
+		System.arraycopy(player2Owned, 0, mPlayer2Owned, 0, length);
+
+		boolean changed;
+		do {
+
+			// Whether the neighbours to the left and above are owned, after
+			// the changes found so far
+			BitSets.shiftUp(mPlayer1Owned, 1, mHorizontal);
+			BitSets.shiftUp(mPlayer1Owned, mColumns, mVertical);
+			for (int i = 0; i < length; ++i) {
+				mPlayer1Surrounded[i] = mPlayer1Fixed[i]
+						& (mFirstColumn[i] | mHorizontal[i])
+						& (mFirstRow[i] | mVertical[i]);
+			}
+			BitSets.shiftUp(mPlayer2Owned, 1, mHorizontal);
+			BitSets.shiftUp(mPlayer2Owned, mColumns, mVertical);
+			for (int i = 0; i < length; ++i) {
+				mPlayer2Surrounded[i] = mPlayer2Fixed[i]
+						& (mFirstColumn[i] | mHorizontal[i])
+						& (mFirstRow[i] | mVertical[i]);
+			}
+
+			// A tile surrounded by player 1 becomes theirs. Otherwise a tile
+			// player 1 had surrounded stays theirs, and a tile surrounded
+			// by player 2 becomes theirs.
+			changed = false;
+			for (int i = 0; i < length; ++i) {
+				long p1Surrounded = mPlayer1Surrounded[i];
+				long p2Surrounded = mPlayer2Surrounded[i];
+				long p1Owned = p1Surrounded | player1Surrounded[i]
+						| (player1Owned[i] & ~p2Surrounded);
+				long p2Owned = ~p1Surrounded & ~player1Surrounded[i]
+						& (p2Surrounded | player2Owned[i]);
+				changed |= p1Owned != mPlayer1Owned[i]
+						|| p2Owned != mPlayer2Owned[i];
+				mPlayer1Owned[i] = p1Owned;
+				mPlayer2Owned[i] = p2Owned;
+			}
+
+		} while (changed);
+
+		for (int i = 0; i < length; ++i) {
+			long p1Surrounded = mPlayer1Surrounded[i];
+			player2Surrounded[i] = ~p1Surrounded & ~player1Surrounded[i]
+					& mPlayer2Surrounded[i];
+			player1Surrounded[i] = p1Surrounded;
+			player1Owned[i] = mPlayer1Owned[i];
+			player2Owned[i] = mPlayer2Owned[i];
+		}
+
+	}
+
+}
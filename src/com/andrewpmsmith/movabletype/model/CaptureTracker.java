@@ -0,0 +1,243 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * Keeps the captures on a board up to date as tiles change owner, doing work
+ * only around the tiles that changed rather than scanning the whole board.
+ *
+ * The tracker works on the ownership masks of a board in the layout used by
+ * CaptureEngine, which it holds on to and updates in place. For each tile it
+ * counts the neighbours owned by each player, with the edge of the board
+ * counting as owned by both, so a tile is surrounded by a player when their
+ * count reaches four. When a tile changes owner only the counts of its
+ * neighbours change.
+ *
+ * It also keeps a dirty mask holding every tile whose state might not match
+ * its neighbours. makeCaptures() visits just the dirty tiles, in ascending
+ * index order, and updates each in place. Since a tile only becomes dirty
+ * when a neighbour changes owner, this gives exactly the result of visiting
+ * every tile on the board in order, as the game has always done. A tile
+ * dirtied by a neighbour after its turn in the scan keeps its dirty bit
+ * until the next call, just as the full scan would only reach it on the
+ * next turn.
+ */
+public final class CaptureTracker {
+
+	public static final int NO_PLAYER = 0;
+	public static final int PLAYER1 = 1;
+	public static final int PLAYER2 = 2;
+
+	private static final int NEIGHBOURS = 4;
+
+	private final int mColumns;
+	private final int mTiles;
+
+	private final long[] mPlayer1Owned;
+	private final long[] mPlayer2Owned;
+	private final long[] mPlayer1Surrounded;
+	private final long[] mPlayer2Surrounded;
+
+	private final byte[] mPlayer1Neighbours;
+	private final byte[] mPlayer2Neighbours;
+	private final long[] mDirty;
+
+	private int mPlayer1Count;
+	private int mPlayer2Count;
+
+	/**
+	 * Create a tracker for the masks of a board. Every tile starts dirty, so
+	 * the first call to makeCaptures() checks the whole board.
+	 */
+	public CaptureTracker(int columns, int rows, long[] player1Owned,
+			long[] player2Owned, long[] player1Surrounded,
+			long[] player2Surrounded) {
+
+		mColumns = columns;
+		mTiles = columns * rows;
+
+		mPlayer1Owned = player1Owned;
+		mPlayer2Owned = player2Owned;
+		mPlayer1Surrounded = player1Surrounded;
+		mPlayer2Surrounded = player2Surrounded;
+
+		mPlayer1Neighbours = new byte[mTiles];
+		mPlayer2Neighbours = new byte[mTiles];
+		mDirty = BitSets.create(mTiles);
+
+		for (int tile = 0; tile < mTiles; ++tile) {
+
+			int column = tile % columns;
+			int edges = 0;
+			if (column == 0)
+				++edges;
+			if (column == columns - 1)
+				++edges;
+			if (tile < columns)
+				++edges;
+			if (tile >= mTiles - columns)
+				++edges;
+			mPlayer1Neighbours[tile] += edges;
+			mPlayer2Neighbours[tile] += edges;
+
+			int owner = getOwner(tile);
+			if (owner != NO_PLAYER)
+				changeNeighbourCounts(tile, owner, 1);
+			if (owner == PLAYER1) {
+				++mPlayer1Count;
+			} else if (owner == PLAYER2) {
+				++mPlayer2Count;
+			}
+
+			BitSets.set(mDirty, tile);
+
+		}
+
+	}
+
+	/**
+	 * @return PLAYER1, PLAYER2 or NO_PLAYER.
+	 */
+	public int getOwner(int tile) {
+		if (BitSets.get(mPlayer1Owned, tile))
+			return PLAYER1;
+		if (BitSets.get(mPlayer2Owned, tile))
+			return PLAYER2;
+		return NO_PLAYER;
+	}
+
+	/**
+	 * @return the number of tiles the player owns, including those they have
+	 *         surrounded.
+	 */
+	public int getOwnedCount(int player) {
+		return (player == PLAYER1) ? mPlayer1Count : mPlayer2Count;
+	}
+
+	/**
+	 * Give a tile to a player, without surrounding it. Captures are not made
+	 * until makeCaptures() is called.
+	 */
+	public void claim(int tile, int player) {
+		setState(tile, player, false);
+	}
+
+	/**
+	 * Put a tile into any state, such as the state it had before a move that
+	 * is being taken back. A surrounded tile must have an owner. Captures
+	 * are not made until makeCaptures() is called.
+	 */
+	public void setState(int tile, int owner, boolean surrounded) {
+
+		BitSets.clear(mPlayer1Surrounded, tile);
+		BitSets.clear(mPlayer2Surrounded, tile);
+		if (surrounded) {
+			BitSets.set((owner == PLAYER1) ? mPlayer1Surrounded
+					: mPlayer2Surrounded, tile);
+		}
+		setOwner(tile, owner);
+		BitSets.set(mDirty, tile);
+
+	}
+
+	/**
+	 * Update every tile that is surrounded by a single player, or is no
+	 * longer surrounded, along with the owned tile counts.
+	 */
+	public void makeCaptures() {
+
+		for (int tile = BitSets.nextSetBit(mDirty, 0); tile >= 0; tile = BitSets
+				.nextSetBit(mDirty, tile + 1)) {
+
+			boolean player1Surrounded = mPlayer1Neighbours[tile] == NEIGHBOURS;
+			boolean player2Surrounded = mPlayer2Neighbours[tile] == NEIGHBOURS;
+
+			if (player1Surrounded) {
+				BitSets.set(mPlayer1Surrounded, tile);
+				BitSets.clear(mPlayer2Surrounded, tile);
+				setOwner(tile, PLAYER1);
+			} else if (BitSets.get(mPlayer1Surrounded, tile)) {
+				BitSets.clear(mPlayer1Surrounded, tile);
+			} else if (player2Surrounded) {
+				BitSets.set(mPlayer2Surrounded, tile);
+				setOwner(tile, PLAYER2);
+			} else if (BitSets.get(mPlayer2Surrounded, tile)) {
+				BitSets.clear(mPlayer2Surrounded, tile);
+			}
+
+			if (isSettled(tile))
+				BitSets.clear(mDirty, tile);
+
+		}
+
+	}
+
+	/*
+	 * Returns true if visiting the tile again would not change it.
+	 */
+	private boolean isSettled(int tile) {
+
+		boolean player1Surrounded = mPlayer1Neighbours[tile] == NEIGHBOURS;
+		if (player1Surrounded || BitSets.get(mPlayer1Surrounded, tile))
+			return player1Surrounded && BitSets.get(mPlayer1Surrounded, tile);
+
+		boolean player2Surrounded = mPlayer2Neighbours[tile] == NEIGHBOURS;
+		return player2Surrounded == BitSets.get(mPlayer2Surrounded, tile);
+
+	}
+
+	private void setOwner(int tile, int player) {
+
+		int owner = getOwner(tile);
+		if (owner == player)
+			return;
+
+		if (owner == PLAYER1) {
+			BitSets.clear(mPlayer1Owned, tile);
+			--mPlayer1Count;
+		} else if (owner == PLAYER2) {
+			BitSets.clear(mPlayer2Owned, tile);
+			--mPlayer2Count;
+		}
+		if (owner != NO_PLAYER)
+			changeNeighbourCounts(tile, owner, -1);
+
+		if (player == PLAYER1) {
+			BitSets.set(mPlayer1Owned, tile);
+			++mPlayer1Count;
+		} else if (player == PLAYER2) {
+			BitSets.set(mPlayer2Owned, tile);
+			++mPlayer2Count;
+		}
+		if (player != NO_PLAYER)
+			changeNeighbourCounts(tile, player, 1);
+
+		BitSets.set(mDirty, tile);
+
+	}
+
+	/*
+	 * Add the change to the player's count for each neighbour of the tile,
+	 * and mark the neighbours dirty.
+	 */
+	private void changeNeighbourCounts(int tile, int player, int change) {
+
+		byte[] counts = (player == PLAYER1) ? mPlayer1Neighbours
+				: mPlayer2Neighbours;
+		int column = tile % mColumns;
+
+		if (column > 0)
+			changeNeighbourCount(counts, tile - 1, change);
+		if (column < mColumns - 1)
+			changeNeighbourCount(counts, tile + 1, change);
+		if (tile >= mColumns)
+			changeNeighbourCount(counts, tile - mColumns, change);
+		if (tile + mColumns < mTiles)
+			changeNeighbourCount(counts, tile + mColumns, change);
+
+	}
+
+	private void changeNeighbourCount(byte[] counts, int tile, int change) {
+		counts[tile] += change;
+		BitSets.set(mDirty, tile);
+	}
+
+}
@@ -0,0 +1,589 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An immutable, minimised directed acyclic word graph (DAWG) used as a compact
+ * in-memory dictionary.
+ *
+ * Nodes are stored in parallel int arrays rather than as objects. Each node
+ * has a mask with one bit per letter that has an outgoing edge, plus a
+ * terminal bit for nodes that end a word. The targets of a node's edges are
+ * stored contiguously, in letter order, so the edge for a letter is found by
+ * counting the bits set below it in the mask. Lookups therefore take one
+ * array access per letter and allocate nothing.
+ *
+ * Each node also records how many words pass through it, which numbers the
+ * words by alphabetical rank: a word's ordinal is the number of words that
+ * end on its path before it, plus the words below the edges it skips over.
+ * The same counts lead from an ordinal back to its word, so the Dawg serves
+ * as its own WordOrdinals table without storing the words a second time.
+ *
+ * Instances are created with a Dawg.Builder, or read from the binary format
+ * produced by write(..). The binary format is a fixed size header followed by
+ * the four arrays as big-endian ints, so it can be loaded with a single bulk
+ * read.
+ */
+public final class Dawg extends AbstractDictionary implements
+		TrieCursor.Source, WordOrdinals {
+
+	static final int FIRST_CHAR = 'A';
+	static final int ALPHABET_SIZE = 26;
+	static final int TERMINAL = 1 << ALPHABET_SIZE;
+	static final int ROOT = 0;
+	static final int NO_NODE = -1;
+	static final long NO_PATH = -1;
+
+	static final int MAGIC = 0x4d544457; // "MTDW"
+	static final int FORMAT_VERSION = 2;
+
+	private final int[] mNodeMasks;
+	private final int[] mFirstEdges;
+	private final int[] mEdges;
+	private final int[] mWordCounts;
+	private final int mWordCount;
+
+	Dawg(int[] nodeMasks, int[] firstEdges, int[] edges, int[] wordCounts,
+			int wordCount) {
+		mNodeMasks = nodeMasks;
+		mFirstEdges = firstEdges;
+		mEdges = edges;
+		mWordCounts = wordCounts;
+		mWordCount = wordCount;
+	}
+
+	@Override
+	public boolean wordInDictionary(CharSequence word) {
+
+		if (word == null)
+			return false;
+
+		int node = ROOT;
+		for (int i = 0; i < word.length() && node != NO_NODE; ++i) {
+			node = child(node, word.charAt(i));
+		}
+
+		return node != NO_NODE && (mNodeMasks[node] & TERMINAL) != 0;
+
+	}
+
+	/**
+	 * @return true if some word in the dictionary starts with the prefix.
+	 *         Every word starts with the empty string.
+	 */
+	public boolean containsPrefix(CharSequence prefix) {
+
+		if (prefix == null)
+			return false;
+
+		int node = ROOT;
+		for (int i = 0; i < prefix.length() && node != NO_NODE; ++i) {
+			node = child(node, prefix.charAt(i));
+		}
+
+		return node != NO_NODE;
+
+	}
+
+	@Override
+	public int getOrdinal(CharSequence word) {
+
+		long path = findPath(word);
+		if (path == NO_PATH || !isTerminal(pathNode(path)))
+			return NOT_FOUND;
+
+		return pathRank(path);
+
+	}
+
+	@Override
+	public String getWord(int ordinal) {
+
+		if (ordinal < 0 || ordinal >= mWordCount)
+			throw new IndexOutOfBoundsException("No word " + ordinal);
+
+		StringBuilder word = new StringBuilder();
+		int node = ROOT;
+
+		// Skip the words that sort before the ordinal at each node: the word
+		// ending at the node, then those below each edge in letter order
+		while (true) {
+
+			int mask = mNodeMasks[node];
+			if ((mask & TERMINAL) != 0) {
+				if (ordinal == 0)
+					return word.toString();
+				--ordinal;
+			}
+
+			int edge = mFirstEdges[node];
+			for (int i = 0; i < ALPHABET_SIZE; ++i) {
+				if ((mask & (1 << i)) != 0) {
+					int child = mEdges[edge++];
+					if (ordinal < mWordCounts[child]) {
+						word.append((char) (FIRST_CHAR + i));
+						node = child;
+						break;
+					}
+					ordinal -= mWordCounts[child];
+				}
+			}
+
+		}
+
+	}
+
+	@Override
+	public int getPrefixStart(CharSequence prefix) {
+		long path = findPath(prefix);
+		return (path == NO_PATH) ? NOT_FOUND : pathRank(path);
+	}
+
+	@Override
+	public int getPrefixEnd(CharSequence prefix) {
+		long path = findPath(prefix);
+		return (path == NO_PATH) ? NOT_FOUND : pathRank(path)
+				+ mWordCounts[pathNode(path)];
+	}
+
+	@Override
+	public TrieCursor newCursor() {
+
+		return new NodeCursor(ROOT) {
+
+			@Override
+			protected int child(int node, char c) {
+				return Dawg.this.child(node, c);
+			}
+
+			@Override
+			protected boolean isTerminal(int node) {
+				return Dawg.this.isTerminal(node);
+			}
+
+		};
+
+	}
+
+	/**
+	 * Read a Dawg previously saved with write(..). The stream is not closed.
+	 *
+	 * @throws IOException
+	 *             if the stream cannot be read or is not in a supported
+	 *             format.
+	 */
+	public static Dawg read(InputStream is) throws IOException {
+
+		DataInputStream in = new DataInputStream(is);
+
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a dictionary file");
+		int version = in.readInt();
+		if (version != FORMAT_VERSION)
+			throw new IOException("Unsupported dictionary version " + version);
+
+		int wordCount = in.readInt();
+		int nodeCount = in.readInt();
+		int edgeCount = in.readInt();
+
+		int[] nodeMasks = readInts(in, nodeCount);
+		int[] firstEdges = readInts(in, nodeCount);
+		int[] edges = readInts(in, edgeCount);
+		int[] wordCounts = readInts(in, nodeCount);
+
+		return new Dawg(nodeMasks, firstEdges, edges, wordCounts, wordCount);
+
+	}
+
+	/**
+	 * Write this Dawg in a versioned binary format that can be loaded with
+	 * read(..). The stream is not closed.
+	 */
+	public void write(OutputStream os) throws IOException {
+
+		DataOutputStream out = new DataOutputStream(os);
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(mWordCount);
+		out.writeInt(mNodeMasks.length);
+		out.writeInt(mEdges.length);
+
+		writeInts(out, mNodeMasks);
+		writeInts(out, mFirstEdges);
+		writeInts(out, mEdges);
+		writeInts(out, mWordCounts);
+
+		out.flush();
+
+	}
+
+	private static int[] readInts(DataInputStream in, int count)
+			throws IOException {
+		byte[] bytes = new byte[count * 4];
+		in.readFully(bytes);
+		int[] ints = new int[count];
+		ByteBuffer.wrap(bytes).asIntBuffer().get(ints);
+		return ints;
+	}
+
+	private static void writeInts(DataOutputStream out, int[] ints)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(ints.length * 4);
+		buffer.asIntBuffer().put(ints);
+		out.write(buffer.array());
+	}
+
+	/**
+	 * Pass every word in the dictionary to the visitor, in alphabetical
+	 * order.
+	 *
+	 * @return false if the visitor stopped the enumeration early.
+	 */
+	public boolean visitWords(WordVisitor visitor) {
+		return visitWords(ROOT, new StringBuilder(), visitor);
+	}
+
+	private boolean visitWords(int node, StringBuilder prefix,
+			WordVisitor visitor) {
+
+		int mask = mNodeMasks[node];
+
+		if ((mask & TERMINAL) != 0 && !visitor.visitWord(prefix.toString()))
+			return false;
+
+		int edge = mFirstEdges[node];
+		int length = prefix.length();
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			if ((mask & (1 << i)) != 0) {
+				prefix.append((char) (FIRST_CHAR + i));
+				boolean more = visitWords(mEdges[edge++], prefix, visitor);
+				prefix.setLength(length);
+				if (!more)
+					return false;
+			}
+		}
+
+		return true;
+
+	}
+
+	public int getWordCount() {
+		return mWordCount;
+	}
+
+	public int getNodeCount() {
+		return mNodeMasks.length;
+	}
+
+	public int getEdgeCount() {
+		return mEdges.length;
+	}
+
+	boolean isTerminal(int node) {
+		return (mNodeMasks[node] & TERMINAL) != 0;
+	}
+
+	/*
+	 * Follow the prefix from the root, counting the words that sort before
+	 * each node on the way. Returns the rank of the first word below the last
+	 * node and that node, packed as rank:node, or NO_PATH if no word starts
+	 * with the prefix.
+	 */
+	private long findPath(CharSequence prefix) {
+
+		if (prefix == null)
+			return NO_PATH;
+
+		int node = ROOT;
+		int rank = 0;
+		for (int i = 0; i < prefix.length(); ++i) {
+
+			int index = prefix.charAt(i) - FIRST_CHAR;
+			if (index < 0 || index >= ALPHABET_SIZE)
+				return NO_PATH;
+
+			int mask = mNodeMasks[node];
+			int bit = 1 << index;
+			if ((mask & bit) == 0)
+				return NO_PATH;
+
+			if ((mask & TERMINAL) != 0)
+				++rank;
+			int edge = mFirstEdges[node];
+			int end = edge + Integer.bitCount(mask & (bit - 1));
+			while (edge < end) {
+				rank += mWordCounts[mEdges[edge++]];
+			}
+			node = mEdges[edge];
+		}
+
+		// Only the root of an empty Dawg has no words below it
+		if (mWordCounts[node] == 0)
+			return NO_PATH;
+
+		return ((long) rank << 32) | node;
+
+	}
+
+	static int pathRank(long path) {
+		return (int) (path >>> 32);
+	}
+
+	static int pathNode(long path) {
+		return (int) path;
+	}
+
+	/**
+	 * Follow the edge labelled with the given letter.
+	 *
+	 * @return the index of the target node, or NO_NODE if there is no edge.
+	 */
+	int child(int node, char c) {
+
+		int index = c - FIRST_CHAR;
+		if (index < 0 || index >= ALPHABET_SIZE)
+			return NO_NODE;
+
+		int mask = mNodeMasks[node];
+		int bit = 1 << index;
+		if ((mask & bit) == 0)
+			return NO_NODE;
+
+		return mEdges[mFirstEdges[node] + Integer.bitCount(mask & (bit - 1))];
+
+	}
+
+	/**
+	 * Builds a Dawg from a sorted list of words using incremental
+	 * minimisation, so that the full trie never needs to be held in memory.
+	 * Only the path of the most recently added word is left unminimised.
+	 */
+	public static final class Builder {
+
+		private final HashMap<BuilderNode, BuilderNode> mRegister = new HashMap<BuilderNode, BuilderNode>();
+		private final List<BuilderNode> mPath = new ArrayList<BuilderNode>();
+		private String mPreviousWord = "";
+		private int mWordCount = 0;
+		private boolean mBuilt = false;
+
+		public Builder() {
+			mPath.add(new BuilderNode());
+		}
+
+		/**
+		 * Add a word. Words must be added in ascending order.
+		 *
+		 * @return true if the word was added, false if it is a duplicate of
+		 *         the previous word or contains characters other than A to Z.
+		 * @throws IllegalArgumentException
+		 *             if the word sorts before the previously added word.
+		 */
+		public boolean add(String word) {
+
+			if (mBuilt)
+				throw new IllegalStateException("Dawg has already been built");
+
+			if (!WordListReader.isUpperCaseWord(word))
+				return false;
+
+			int order = word.compareTo(mPreviousWord);
+			if (order == 0)
+				return false;
+			if (order < 0)
+				throw new IllegalArgumentException("Words must be added in order: "
+						+ word + " follows " + mPreviousWord);
+
+			int common = commonPrefixLength(word, mPreviousWord);
+			minimise(common);
+
+			BuilderNode node = mPath.get(common);
+			for (int i = common; i < word.length(); ++i) {
+				BuilderNode next = new BuilderNode();
+				node.addChild(word.charAt(i), next);
+				mPath.add(next);
+				node = next;
+			}
+			node.mTerminal = true;
+
+			mPreviousWord = word;
+			++mWordCount;
+
+			return true;
+
+		}
+
+		public Dawg build() {
+
+			if (mBuilt)
+				throw new IllegalStateException("Dawg has already been built");
+			mBuilt = true;
+
+			minimise(0);
+			mPath.get(0).countWords();
+
+			// Number the nodes breadth first, so the root is node 0
+			List<BuilderNode> nodes = new ArrayList<BuilderNode>();
+			BuilderNode root = mPath.get(0);
+			root.mId = ROOT;
+			nodes.add(root);
+			int edgeCount = 0;
+
+			for (int i = 0; i < nodes.size(); ++i) {
+				BuilderNode node = nodes.get(i);
+				for (int j = 0; j < node.mChildCount; ++j) {
+					BuilderNode child = node.mChildren[j];
+					if (child.mId == NO_NODE) {
+						child.mId = nodes.size();
+						nodes.add(child);
+					}
+				}
+				edgeCount += node.mChildCount;
+			}
+
+			int[] nodeMasks = new int[nodes.size()];
+			int[] firstEdges = new int[nodes.size()];
+			int[] edges = new int[edgeCount];
+			int[] wordCounts = new int[nodes.size()];
+			int edge = 0;
+
+			for (int i = 0; i < nodes.size(); ++i) {
+				BuilderNode node = nodes.get(i);
+				int mask = node.mTerminal ? TERMINAL : 0;
+				firstEdges[i] = edge;
+				wordCounts[i] = node.mWordCount;
+				for (int j = 0; j < node.mChildCount; ++j) {
+					mask |= 1 << (node.mLetters[j] - FIRST_CHAR);
+					edges[edge++] = node.mChildren[j].mId;
+				}
+				nodeMasks[i] = mask;
+			}
+
+			mRegister.clear();
+			mPath.clear();
+
+			return new Dawg(nodeMasks, firstEdges, edges, wordCounts,
+					mWordCount);
+
+		}
+
+		/*
+		 * Replace each node on the unminimised path below the given depth with
+		 * an equivalent node from the register, or register it if it is the
+		 * first of its kind. Nodes are processed deepest first so that
+		 * children are always canonical, and their words counted, before
+		 * their parents are compared.
+		 */
+		private void minimise(int depth) {
+
+			for (int i = mPath.size() - 1; i > depth; --i) {
+				BuilderNode node = mPath.remove(i);
+				node.countWords();
+				BuilderNode existing = mRegister.get(node);
+				if (existing != null) {
+					mPath.get(i - 1).replaceLastChild(existing);
+				} else {
+					mRegister.put(node, node);
+				}
+			}
+
+		}
+
+		private static int commonPrefixLength(String a, String b) {
+			int length = Math.min(a.length(), b.length());
+			int i = 0;
+			while (i < length && a.charAt(i) == b.charAt(i)) {
+				++i;
+			}
+			return i;
+		}
+
+	} // class Builder
+
+	/*
+	 * Mutable node used while building. Two nodes are equivalent if they have
+	 * the same terminal flag and identical edges to the same (already
+	 * minimised) children.
+	 */
+	private static final class BuilderNode {
+
+		private boolean mTerminal;
+		private char[] mLetters = new char[2];
+		private BuilderNode[] mChildren = new BuilderNode[2];
+		private int mChildCount;
+		private int mWordCount;
+		private int mId = NO_NODE;
+
+		public void addChild(char c, BuilderNode child) {
+			if (mChildCount == mLetters.length) {
+				char[] letters = new char[mChildCount * 2];
+				BuilderNode[] children = new BuilderNode[mChildCount * 2];
+				System.arraycopy(mLetters, 0, letters, 0, mChildCount);
+				System.arraycopy(mChildren, 0, children, 0, mChildCount);
+				mLetters = letters;
+				mChildren = children;
+			}
+			mLetters[mChildCount] = c;
+			mChildren[mChildCount] = child;
+			++mChildCount;
+		}
+
+		public void replaceLastChild(BuilderNode child) {
+			mChildren[mChildCount - 1] = child;
+		}
+
+		/*
+		 * Count the words that pass through this node, once its children are
+		 * final.
+		 */
+		public void countWords() {
+			mWordCount = mTerminal ? 1 : 0;
+			for (int i = 0; i < mChildCount; ++i) {
+				mWordCount += mChildren[i].mWordCount;
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+
+			if (o == this)
+				return true;
+			if (!(o instanceof BuilderNode))
+				return false;
+
+			BuilderNode other = (BuilderNode) o;
+			if (mTerminal != other.mTerminal
+					|| mChildCount != other.mChildCount)
+				return false;
+
+			for (int i = 0; i < mChildCount; ++i) {
+				if (mLetters[i] != other.mLetters[i]
+						|| mChildren[i] != other.mChildren[i])
+					return false;
+			}
+
+			return true;
+
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = mTerminal ? 1 : 0;
+			for (int i = 0; i < mChildCount; ++i) {
+				hash = hash * 31 + mLetters[i];
+				hash = hash * 31 + System.identityHashCode(mChildren[i]);
+			}
+			return hash;
+		}
+
+	} // class BuilderNode
+
+}
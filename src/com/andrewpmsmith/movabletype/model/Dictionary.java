@@ -0,0 +1,24 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A read-only collection of words that can be used to determine if a given
+ * string is an English word.
+ *
+ * Words are expected to be in upper case and contain only the letters A to Z.
+ * Any other input is reported as not being in the dictionary.
+ */
+public interface Dictionary {
+
+	public boolean wordInDictionary(CharSequence word);
+
+	/**
+	 * Look up many words at once.
+	 *
+	 * @return the subset of the given words that are in the dictionary.
+	 */
+	public Set<String> lookupAll(Collection<String> words);
+
+}
@@ -19,6 +19,8 @@ public class GameDataBase extends SQLiteOpenHelper {
 
 	public static final int NULL_PARAMETER_ERROR = -1;
 
+	// Only the schema is versioned. Games are converted from older formats
+	// as they are read, by GameModel's readObject(..)
 	private static final int DATABASE_VERSION = 1;
 	private static final String DATABASE_NAME = "gamedatabase";
 	private static final String TABLE_GAMES = "savedgames";
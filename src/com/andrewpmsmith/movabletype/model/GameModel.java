@@ -1,7 +1,10 @@
 package com.andrewpmsmith.movabletype.model;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -13,22 +16,56 @@ import android.content.Context;
  * 
  * A GameModel provides the data that is rendered on a Board object, and accepts
  * user input via a Board object.
+ *
+ * The grid is stored as an array of letters and a set of bit masks with one
+ * bit per tile: the tiles owned by each player, including those that are
+ * surrounded, and the tiles each player has surrounded. The masks are arrays
+ * of longs so that they are not limited to 64 tiles.
+ *
+ * Games are played on a standard board of GRID_COLUMNS by GRID_ROWS tiles
+ * unless another size is given when the game is created. The work done for
+ * a turn depends on the length of the word rather than the size of the
+ * board, so boards up to MAX_GRID_DIMENSION tiles square can be played.
+ *
+ * For searching the game tree, makeMove(..) and makePass() change the game
+ * as playTurn() and passTurn() do, and unmakeMove() takes the last of them
+ * back. The state before each is kept on an undo stack of arrays that only
+ * grow when the search goes deeper than before, so making and unmaking
+ * moves allocates nothing.
  * 
  * @author Andrew Smith
  */
 public class GameModel implements Serializable {
 
+	// The size of a standard board
 	public static final int GRID_COLUMNS = 5;
 	public static final int GRID_ROWS = 5;
 	public static final int GRID_ITEMS = GRID_COLUMNS * GRID_ROWS;
+	public static final int MIN_GRID_DIMENSION = 4;
+	public static final int MAX_GRID_DIMENSION = 64;
 	public static final int PLAYER1 = 0;
 	public static final int PLAYER2 = 1;
+	// Unchanged since the first release, so that games saved in the
+	// original format can still be read; see readObject(..)
 	private static final long serialVersionUID = 1L;
 
+	// On a standard board; other boards have the same proportion of vowels
 	private static final int NUMBER_OF_VOWELS_ON_BOARD = 4;
+	private static final int ALPHABET_SIZE = 26;
 	private static final String CONSONANTS = "BCDFHJKLMNPRSTVWXYZQ";
 	private static final String VOWELS = "AEIOU";
 
+	// Saved for each move on the undo stack: the four masks, and the values
+	// below
+	private static final int UNDO_MASKS = 4;
+	private static final int UNDO_VALUES = 4;
+	private static final int UNDO_PLAYER1_POINTS = 0;
+	private static final int UNDO_PLAYER2_POINTS = 1;
+	private static final int UNDO_HAS_PASSED = 2;
+	private static final int UNDO_MOVE_WORDS = 3;
+	private static final int INITIAL_UNDO_CAPACITY = 16;
+	private static final int NO_ORDINAL = WordOrdinals.NOT_FOUND;
+
 	public enum GameState {
 		PLAYER1_TURN, PLAYER2_TURN, GAME_OVER
 	}
@@ -45,40 +82,76 @@ public class GameModel implements Serializable {
 		PLAYER1_WIN, PLAYER2_WIN, DRAW
 	}
 
-	private class Letter implements Serializable {
-
-		private static final long serialVersionUID = 1L;
-		public char mLetter;
-		public LetterState mLetterState;
-
-		public Letter(char letter) {
-			mLetter = letter;
-			mLetterState = LetterState.UNPLAYED;
-		}
-
-		public Letter(char letter, LetterState state) {
-			mLetter = letter;
-			mLetterState = state;
-		}
-
-	}
-
-	private final Letter[] mGrid;
-	private List<Integer> mWord;
+	// Not final, so that readObject(..) can convert the original format
+	private int mColumns;
+	private int mRows;
+	private byte[] mLetters;
+	private long[] mPlayer1Owned;
+	private long[] mPlayer2Owned;
+	private long[] mPlayer1Surrounded;
+	private long[] mPlayer2Surrounded;
+	// The tiles of the current word are the first mWordLength entries
+	private int[] mWord = new int[GRID_ITEMS];
+	private int mWordLength;
 
 	private GameState mGameState;
 	private GameResult mGameResult;
 	private boolean mHasPassed;
-	private WordTrie mPlayedWords = new WordTrie();
+	// Created from the context when first needed; see getPlayedWords()
+	private PlayedWordSet mPlayedWords;
 
 	private int mPlayer1Points;
 	private int mPlayer2Points;
 
 	transient protected Context mContext;
 
+	// The first mWordDepth tiles of mWord as last seen by updateWord(), the
+	// points each player would have with each prefix of them, and a cursor
+	// following them through the dictionary
+	transient private int[] mWordTiles;
+	transient private int[] mWordPlayer1Points;
+	transient private int[] mWordPlayer2Points;
+	transient private int mWordDepth;
+	transient private TrieCursor mDictionaryCursor;
+	transient private boolean mDictionaryCursorCreated;
+	transient private CharSequence mWordSequence;
+
+	// Created from the masks when first needed, so that it is rebuilt for
+	// restored games
+	transient private CaptureTracker mCaptureTracker;
+
+	// The state before each move made by makeMove(..) or makePass(), and
+	// the ordinals of the words played by makeMove(..), with the word itself
+	// for those that have no ordinal. None of these are saved with the game.
+	transient private long[] mUndoMasks;
+	transient private int[] mUndoValues;
+	transient private GameState[] mUndoStates;
+	transient private GameResult[] mUndoResults;
+	transient private int mUndoDepth;
+	transient private int[] mMoveWords;
+	transient private String[] mMoveWordStrings;
+	transient private int mMoveWordCount;
+
 	public GameModel(Context context) {
+		this(context, GRID_COLUMNS, GRID_ROWS);
+	}
+
+	/**
+	 * Create a game on a board of random letters with the given number of
+	 * columns and rows, each from MIN_GRID_DIMENSION to MAX_GRID_DIMENSION.
+	 */
+	public GameModel(Context context, int columns, int rows) {
 
-		mGrid = generateRandomLetterGrid();
+		checkGridDimensions(columns, rows);
+		mColumns = columns;
+		mRows = rows;
+
+		int tiles = columns * rows;
+		mLetters = generateRandomLetterGrid(tiles);
+		mPlayer1Owned = BitSets.create(tiles);
+		mPlayer2Owned = BitSets.create(tiles);
+		mPlayer1Surrounded = BitSets.create(tiles);
+		mPlayer2Surrounded = BitSets.create(tiles);
 
 		mGameState = GameState.PLAYER1_TURN;
 		mPlayer1Points = 0;
@@ -103,13 +176,142 @@ public class GameModel implements Serializable {
 		return Serializer.serialize(this);
 	}
 
-	public GameModel(char[] grid, LetterState[] states, GameState gameState,
-			int p1Points, int p2Points, Context context) {
+	/*
+	 * Read either the current fields or those of the original format, in
+	 * which the grid was an array of Letters, the word a list of tiles and
+	 * the played words a WordTrie. Games saved by earlier versions are
+	 * converted as they are read, so saved games survive upgrades.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+
+		ObjectInputStream.GetField fields = in.readFields();
+
+		mGameState = (GameState) fields.get("mGameState", null);
+		mGameResult = (GameResult) fields.get("mGameResult", null);
+		mHasPassed = fields.get("mHasPassed", false);
+		mPlayer1Points = fields.get("mPlayer1Points", 0);
+		mPlayer2Points = fields.get("mPlayer2Points", 0);
+
+		if (fields.getObjectStreamClass().getField("mGrid") != null) {
+			readOriginalFields(fields);
+			return;
+		}
+
+		mColumns = fields.get("mColumns", 0);
+		mRows = fields.get("mRows", 0);
+		mLetters = (byte[]) fields.get("mLetters", null);
+		mPlayer1Owned = (long[]) fields.get("mPlayer1Owned", null);
+		mPlayer2Owned = (long[]) fields.get("mPlayer2Owned", null);
+		mPlayer1Surrounded = (long[]) fields.get("mPlayer1Surrounded", null);
+		mPlayer2Surrounded = (long[]) fields.get("mPlayer2Surrounded", null);
+		mWord = (int[]) fields.get("mWord", null);
+		mWordLength = fields.get("mWordLength", 0);
+		mPlayedWords = (PlayedWordSet) fields.get("mPlayedWords", null);
+
+		try {
+			checkGridDimensions(mColumns, mRows);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidObjectException(e.getMessage());
+		}
+
+		int tiles = mColumns * mRows;
+		int maskLength = BitSets.length(tiles);
+		if (mLetters == null || mLetters.length != tiles
+				|| !isMask(mPlayer1Owned, maskLength)
+				|| !isMask(mPlayer2Owned, maskLength)
+				|| !isMask(mPlayer1Surrounded, maskLength)
+				|| !isMask(mPlayer2Surrounded, maskLength) || mWord == null
+				|| mWordLength < 0 || mWordLength > mWord.length)
+			throw new InvalidObjectException("Corrupt game");
+
+		for (int i = 0; i < mWordLength; ++i) {
+			if (mWord[i] < 0 || mWord[i] >= tiles)
+				throw new InvalidObjectException("Corrupt game");
+		}
+
+	}
+
+	private static boolean isMask(long[] mask, int length) {
+		return mask != null && mask.length == length;
+	}
+
+	private void readOriginalFields(ObjectInputStream.GetField fields)
+			throws IOException {
+
+		Letter[] grid = (Letter[]) fields.get("mGrid", null);
+		@SuppressWarnings("unchecked")
+		List<Integer> word = (List<Integer>) fields.get("mWord", null);
+		WordTrie playedWords = (WordTrie) fields.get("mPlayedWords", null);
 
-		mGrid = new Letter[GRID_ITEMS];
+		if (grid == null || grid.length != GRID_ITEMS || playedWords == null)
+			throw new InvalidObjectException("Corrupt game");
 
+		mColumns = GRID_COLUMNS;
+		mRows = GRID_ROWS;
+		mLetters = new byte[GRID_ITEMS];
+		mPlayer1Owned = BitSets.create(GRID_ITEMS);
+		mPlayer2Owned = BitSets.create(GRID_ITEMS);
+		mPlayer1Surrounded = BitSets.create(GRID_ITEMS);
+		mPlayer2Surrounded = BitSets.create(GRID_ITEMS);
 		for (int i = 0; i < GRID_ITEMS; ++i) {
-			mGrid[i] = new Letter(grid[i], states[i]);
+			mLetters[i] = (byte) grid[i].mLetter;
+			setLetterState(i, grid[i].mLetterState);
+		}
+
+		mWordLength = (word == null) ? 0 : word.size();
+		if (mWordLength > GRID_ITEMS)
+			throw new InvalidObjectException("Corrupt game");
+		mWord = new int[GRID_ITEMS];
+		for (int i = 0; i < mWordLength; ++i) {
+			mWord[i] = word.get(i);
+		}
+
+		final List<String> words = new ArrayList<String>();
+		playedWords.visitWords(new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				words.add(word);
+				return true;
+			}
+
+		});
+		mPlayedWords = PlayedWordSet.fromWords(words);
+
+	}
+
+	public GameModel(char[] grid, LetterState[] states, GameState gameState,
+			int p1Points, int p2Points, Context context) {
+		this(GRID_COLUMNS, GRID_ROWS, grid, states, gameState, p1Points,
+				p2Points, context);
+	}
+
+	/**
+	 * Create a game on a board of the given size, with the letters and
+	 * states of the tiles given row by row.
+	 */
+	public GameModel(int columns, int rows, char[] grid, LetterState[] states,
+			GameState gameState, int p1Points, int p2Points, Context context) {
+
+		checkGridDimensions(columns, rows);
+		mColumns = columns;
+		mRows = rows;
+
+		int tiles = columns * rows;
+		if (grid.length != tiles || states.length != tiles)
+			throw new IllegalArgumentException("Grid does not have " + tiles
+					+ " tiles");
+
+		mLetters = new byte[tiles];
+		mPlayer1Owned = BitSets.create(tiles);
+		mPlayer2Owned = BitSets.create(tiles);
+		mPlayer1Surrounded = BitSets.create(tiles);
+		mPlayer2Surrounded = BitSets.create(tiles);
+
+		for (int i = 0; i < tiles; ++i) {
+			mLetters[i] = (byte) grid[i];
+			setLetterState(i, states[i]);
 		}
 
 		mGameState = gameState;
@@ -120,6 +322,45 @@ public class GameModel implements Serializable {
 
 	}
 
+	/**
+	 * Create a snapshot of a game. The copy has its own grid, scores, state
+	 * and moves made with makeMove(..), which it can unmake independently
+	 * of the original. It shares the played words with the original, which
+	 * is safe because they are never modified. The current word is not
+	 * copied.
+	 */
+	public GameModel(GameModel game) {
+
+		mColumns = game.mColumns;
+		mRows = game.mRows;
+		mLetters = game.mLetters.clone();
+		mPlayer1Owned = game.mPlayer1Owned.clone();
+		mPlayer2Owned = game.mPlayer2Owned.clone();
+		mPlayer1Surrounded = game.mPlayer1Surrounded.clone();
+		mPlayer2Surrounded = game.mPlayer2Surrounded.clone();
+
+		mGameState = game.mGameState;
+		mGameResult = game.mGameResult;
+		mHasPassed = game.mHasPassed;
+		mPlayedWords = game.mPlayedWords;
+		mPlayer1Points = game.mPlayer1Points;
+		mPlayer2Points = game.mPlayer2Points;
+
+		if (game.mUndoStates != null) {
+			mUndoMasks = game.mUndoMasks.clone();
+			mUndoValues = game.mUndoValues.clone();
+			mUndoStates = game.mUndoStates.clone();
+			mUndoResults = game.mUndoResults.clone();
+			mMoveWords = game.mMoveWords.clone();
+			mMoveWordStrings = game.mMoveWordStrings.clone();
+		}
+		mUndoDepth = game.mUndoDepth;
+		mMoveWordCount = game.mMoveWordCount;
+
+		mContext = game.mContext;
+
+	}
+
 	/* DataSource Methods */
 
 	public GameState getGameState() {
@@ -127,53 +368,56 @@ public class GameModel implements Serializable {
 	}
 
 	public int getGridSize() {
-		return GRID_ITEMS;
+		return mLetters.length;
 	}
 
 	public int getGridHeight() {
-		return GRID_ROWS;
+		return mRows;
 	}
 
 	public int getGridWidth() {
-		return GRID_COLUMNS;
+		return mColumns;
 	}
 
 	public char getLetter(int index) {
-		return mGrid[index].mLetter;
+		return (char) mLetters[index];
 	}
 
 	public LetterState getLetterState(int index) {
-		return mGrid[index].mLetterState;
+		if (BitSets.get(mPlayer1Owned, index)) {
+			return BitSets.get(mPlayer1Surrounded, index) ? LetterState.PLAYER1_SURROUNDED
+					: LetterState.PLAYER1_OWNED;
+		} else if (BitSets.get(mPlayer2Owned, index)) {
+			return BitSets.get(mPlayer2Surrounded, index) ? LetterState.PLAYER2_SURROUNDED
+					: LetterState.PLAYER2_OWNED;
+		}
+		return LetterState.UNPLAYED;
+	}
+
+	/**
+	 * Count the occurrences of each letter on the grid.
+	 *
+	 * @return an array of 26 counts, indexed from 'A'.
+	 */
+	public int[] getLetterCounts() {
+		int[] counts = new int[ALPHABET_SIZE];
+		for (int i = 0; i < mLetters.length; ++i) {
+			++counts[mLetters[i] - 'A'];
+		}
+		return counts;
 	}
 
+	/**
+	 * @return the player's points if the current word were played, before
+	 *         any captures.
+	 */
 	public int getPoints(int player) {
 
-		int p1Points = mPlayer1Points;
-		int p2Points = mPlayer2Points;
-
-		if (mWord != null) {
-			for (int i : mWord) {
-				LetterState state = mGrid[i].mLetterState;
-
-				if (mGameState == GameState.PLAYER1_TURN) {
-					if (state == LetterState.UNPLAYED) {
-						++p1Points;
-					} else if (state == LetterState.PLAYER2_OWNED) {
-						++p1Points;
-						--p2Points;
-					}
-				} else if (mGameState == GameState.PLAYER2_TURN) {
-					if (state == LetterState.UNPLAYED) {
-						++p2Points;
-					} else if (state == LetterState.PLAYER1_OWNED) {
-						++p2Points;
-						--p1Points;
-					}
-				}
-			}
-		}
+		updateWord();
 
-		return (player == PLAYER1) ? p1Points : p2Points;
+		return (player == PLAYER1) ? mPlayer1Points
+				+ mWordPlayer1Points[mWordDepth] : mPlayer2Points
+				+ mWordPlayer2Points[mWordDepth];
 
 	}
 
@@ -182,67 +426,199 @@ public class GameModel implements Serializable {
 	}
 
 	public String getWord() {
-		return decodeWordFromTileIndexes(mWord);
+		return getWordSequence().toString();
+	}
+
+	/**
+	 * @return the letters of the current word. The sequence reads them from
+	 *         the grid as they are needed, so it always holds the current
+	 *         word, and reading it does not allocate.
+	 */
+	public CharSequence getWordSequence() {
+		if (mWordSequence == null)
+			mWordSequence = new WordSequence();
+		return mWordSequence;
 	}
 
 	/* Delegate Methods */
 
 	public TurnResult playTurn() {
 
-		if (mWord == null)
-			return TurnResult.WORD_LESS_THAN_TWO_LETTERS;
+		checkNoMovesMade();
 
-		String word = decodeWordFromTileIndexes(mWord);
+		CharSequence word = getWordSequence();
 
 		TurnResult ret = applyRules(word);
 
 		if (ret == TurnResult.SUCCESS) {
-			mHasPassed = false;
 
-			mPlayedWords.add(word);
+			mPlayedWords = getPlayedWords().add(word);
+
+			completeTurn();
 
-			mPlayer1Points = getPoints(PLAYER1);
-			mPlayer2Points = getPoints(PLAYER2);
+		}
 
-			// Assign new states to played word
-			for (int i : mWord) {
+		return ret;
+
+	}
+
+	public void passTurn() {
+		checkNoMovesMade();
+		completePass();
+	}
+
+	/**
+	 * Play a word on the given tiles as setWord(..) and playTurn() would, so
+	 * that it can be taken back with unmakeMove(). Moves that have been made
+	 * must be unmade before playTurn() or passTurn() is called, and are not
+	 * saved with the game.
+	 *
+	 * @return the result of the rules; the move is only made on SUCCESS.
+	 */
+	public TurnResult makeMove(int[] tiles, int length) {
 
-				if (mGrid[i].mLetterState != LetterState.PLAYER1_SURROUNDED
-						&& mGrid[i].mLetterState != LetterState.PLAYER2_SURROUNDED) {
+		setWord(tiles, length);
 
-					mGrid[i].mLetterState = (mGameState == GameState.PLAYER1_TURN) ? LetterState.PLAYER1_OWNED
-							: LetterState.PLAYER2_OWNED;
+		CharSequence word = getWordSequence();
+
+		TurnResult ret = applyRules(word);
+
+		if (ret == TurnResult.SUCCESS) {
+			pushUndo();
+			int ordinal = getPlayedWords().getOrdinal(word);
+			// Only words missing from the ordinals need to be copied
+			mMoveWordStrings[mMoveWordCount] = (ordinal == NO_ORDINAL) ? word
+					.toString() : null;
+			mMoveWords[mMoveWordCount++] = ordinal;
+			completeTurn();
+		}
+
+		return ret;
+
+	}
+
+	/**
+	 * Pass as passTurn() would, so that it can be taken back with
+	 * unmakeMove().
+	 */
+	public void makePass() {
+		pushUndo();
+		completePass();
+	}
+
+	/**
+	 * Take back the last move made by makeMove(..) or makePass(), and clear
+	 * the current word.
+	 */
+	public void unmakeMove() {
+
+		if (mUndoDepth == 0)
+			throw new IllegalStateException("No move to unmake");
+
+		--mUndoDepth;
+
+		// Put back the tiles that changed, through the tracker so that it
+		// stays up to date with the masks
+		CaptureTracker tracker = getCaptureTracker();
+		int length = mPlayer1Owned.length;
+		int offset = mUndoDepth * UNDO_MASKS * length;
+		for (int i = 0; i < length; ++i) {
+
+			long player1Owned = mUndoMasks[offset + i];
+			long player2Owned = mUndoMasks[offset + length + i];
+			long surrounded = mUndoMasks[offset + 2 * length + i]
+					| mUndoMasks[offset + 3 * length + i];
+			long changed = (player1Owned ^ mPlayer1Owned[i])
+					| (player2Owned ^ mPlayer2Owned[i])
+					| (mUndoMasks[offset + 2 * length + i] ^ mPlayer1Surrounded[i])
+					| (mUndoMasks[offset + 3 * length + i] ^ mPlayer2Surrounded[i]);
+
+			while (changed != 0) {
+
+				long bit = changed & -changed;
+				changed &= ~bit;
+				int tile = i * BitSets.BITS_PER_WORD
+						+ Long.numberOfTrailingZeros(bit);
+
+				int owner = CaptureTracker.NO_PLAYER;
+				if ((player1Owned & bit) != 0) {
+					owner = CaptureTracker.PLAYER1;
+				} else if ((player2Owned & bit) != 0) {
+					owner = CaptureTracker.PLAYER2;
 				}
+				tracker.setState(tile, owner, (surrounded & bit) != 0);
 
 			}
+		}
 
-			mWord = null;
+		int values = mUndoDepth * UNDO_VALUES;
+		mPlayer1Points = mUndoValues[values + UNDO_PLAYER1_POINTS];
+		mPlayer2Points = mUndoValues[values + UNDO_PLAYER2_POINTS];
+		mHasPassed = mUndoValues[values + UNDO_HAS_PASSED] != 0;
+		mMoveWordCount = mUndoValues[values + UNDO_MOVE_WORDS];
+		mGameState = mUndoStates[mUndoDepth];
+		mGameResult = mUndoResults[mUndoDepth];
 
-			makeCaptures();
+		mWordLength = 0;
+		invalidateWord();
 
-			// check if game is over
-			boolean gameIsOver = true;
-			for (int i = 0; i < GRID_ITEMS; ++i) {
-				gameIsOver &= mGrid[i].mLetterState != LetterState.UNPLAYED;
-				if (!gameIsOver)
-					break;
-			}
+	}
 
-			if (gameIsOver) {
-				endGame();
-			} else if (mGameState == GameState.PLAYER1_TURN) {
-				mGameState = GameState.PLAYER2_TURN;
-			} else if (mGameState == GameState.PLAYER2_TURN) {
-				mGameState = GameState.PLAYER1_TURN;
+	/**
+	 * @return the number of moves that have been made and not unmade.
+	 */
+	public int getMoveDepth() {
+		return mUndoDepth;
+	}
+
+	/*
+	 * Claims the tiles of the current word, which has passed the rules and
+	 * been added to the played words, makes the captures and moves on to
+	 * the next turn.
+	 */
+	private void completeTurn() {
+
+		mHasPassed = false;
+
+		mPlayer1Points = getPoints(PLAYER1);
+		mPlayer2Points = getPoints(PLAYER2);
+
+		// Assign new states to played word
+		CaptureTracker tracker = getCaptureTracker();
+		for (int w = 0; w < mWordLength; ++w) {
+
+			int i = mWord[w];
+			if (!BitSets.get(mPlayer1Surrounded, i)
+					&& !BitSets.get(mPlayer2Surrounded, i)) {
+
+				tracker.claim(i,
+						(mGameState == GameState.PLAYER1_TURN) ? CaptureTracker.PLAYER1
+								: CaptureTracker.PLAYER2);
 			}
 
 		}
 
-		return ret;
+		mWordLength = 0;
+		invalidateWord();
+
+		makeCaptures();
+
+		// check if game is over
+		boolean gameIsOver = tracker.getOwnedCount(CaptureTracker.PLAYER1)
+				+ tracker.getOwnedCount(CaptureTracker.PLAYER2) == mLetters.length;
+
+		if (gameIsOver) {
+			endGame();
+		} else if (mGameState == GameState.PLAYER1_TURN) {
+			mGameState = GameState.PLAYER2_TURN;
+		} else if (mGameState == GameState.PLAYER2_TURN) {
+			mGameState = GameState.PLAYER1_TURN;
+		}
 
 	}
 
-	public void passTurn() {
+	private void completePass() {
+		invalidateWord();
 		if (mHasPassed) {
 			endGame();
 		} else if (mGameState == GameState.PLAYER1_TURN) {
@@ -265,52 +641,436 @@ public class GameModel implements Serializable {
 		}
 	}
 
+	/**
+	 * Set the current word from a list of tile indexes, or clear it if the
+	 * list is null.
+	 */
 	public void setWord(List<Integer> letters) {
-		mWord = letters;
+
+		int length = (letters == null) ? 0 : letters.size();
+		ensureWordCapacity(length);
+
+		for (int i = 0; i < length; ++i) {
+			mWord[i] = letters.get(i);
+		}
+		mWordLength = length;
+
+		updateWord();
+
+	}
+
+	/**
+	 * Set the current word from the first length tile indexes in the array.
+	 * The indexes are copied, so the array can be reused, and nothing is
+	 * allocated unless the word is longer than any before it.
+	 */
+	public void setWord(int[] tiles, int length) {
+
+		ensureWordCapacity(length);
+		System.arraycopy(tiles, 0, mWord, 0, length);
+		mWordLength = length;
+
+		updateWord();
+
+	}
+
+	/**
+	 * @return true if the current word has already been played.
+	 */
+	public boolean isWordPlayed() {
+
+		CharSequence word = getWordSequence();
+		PlayedWordSet playedWords = getPlayedWords();
+		if (playedWords.contains(word))
+			return true;
+		if (mMoveWordCount == 0)
+			return false;
+
+		int ordinal = playedWords.getOrdinal(word);
+		for (int i = 0; i < mMoveWordCount; ++i) {
+			if (ordinal != NO_ORDINAL ? mMoveWords[i] == ordinal
+					: mMoveWordStrings[i] != null
+							&& mMoveWordStrings[i].contentEquals(word))
+				return true;
+		}
+		return false;
+
+	}
+
+	/**
+	 * @return true if the current word is the start of, or the same as, a
+	 *         word that has already been played.
+	 */
+	public boolean isWordPrefixOfPlayedWord() {
+		return isPrefixOfPlayedWord(getWordSequence());
+	}
+
+	/**
+	 * @return true if the current word is in the dictionary.
+	 */
+	public boolean isWordInDictionary() {
+		updateDictionaryCursor();
+		if (mDictionaryCursor == null)
+			return SharedDictionary.get(mContext).wordInDictionary(
+					getWordSequence());
+		return mDictionaryCursor.isWord();
+	}
+
+	/**
+	 * @return true if letters could be added to the current word to make a
+	 *         word in the dictionary, or it already is one. If the dictionary
+	 *         does not support prefix checks this is always true.
+	 */
+	public boolean canWordBeExtended() {
+		updateDictionaryCursor();
+		return mDictionaryCursor == null || mDictionaryCursor.isPrefix();
 	}
 
 	/* Internal */
 
-	private String decodeWordFromTileIndexes(List<Integer> word) {
+	/*
+	 * Returns true if the string is the start of, or the same as, a word
+	 * played with playTurn() or makeMove(..). Package-private for
+	 * MoveGenerator.
+	 */
+	boolean isPrefixOfPlayedWord(CharSequence prefix) {
+
+		PlayedWordSet playedWords = getPlayedWords();
+		if (playedWords.containsPrefix(prefix))
+			return true;
+		if (mMoveWordCount == 0)
+			return false;
+
+		// The words with ordinals that start with the prefix
+		int start = NO_ORDINAL;
+		int end = NO_ORDINAL;
+		WordOrdinals dictionary = playedWords.getDictionary();
+		if (dictionary != null) {
+			start = dictionary.getPrefixStart(prefix);
+			end = dictionary.getPrefixEnd(prefix);
+		}
+
+		for (int i = 0; i < mMoveWordCount; ++i) {
+			if (mMoveWords[i] != NO_ORDINAL ? mMoveWords[i] >= start
+					&& mMoveWords[i] < end : PlayedWordSet.comparePrefix(
+					mMoveWordStrings[i], prefix) == 0)
+				return true;
+		}
+		return false;
+
+	}
+
+	/*
+	 * Copies the ownership masks of the grid, for MoveEvaluator.
+	 */
+	void copyMasks(long[] player1Owned, long[] player2Owned,
+			long[] player1Surrounded, long[] player2Surrounded) {
+		System.arraycopy(mPlayer1Owned, 0, player1Owned, 0,
+				mPlayer1Owned.length);
+		System.arraycopy(mPlayer2Owned, 0, player2Owned, 0,
+				mPlayer2Owned.length);
+		System.arraycopy(mPlayer1Surrounded, 0, player1Surrounded, 0,
+				mPlayer1Surrounded.length);
+		System.arraycopy(mPlayer2Surrounded, 0, player2Surrounded, 0,
+				mPlayer2Surrounded.length);
+	}
+
+	/*
+	 * Returns the played words, creating them or mapping saved words to the
+	 * ordinals of the installed dictionary if necessary.
+	 */
+	private PlayedWordSet getPlayedWords() {
+
+		if (mPlayedWords == null) {
+			mPlayedWords = new PlayedWordSet(
+					SharedDictionary.getOrdinals(mContext));
+		} else if (!mPlayedWords.isResolved()) {
+			mPlayedWords = mPlayedWords.withDictionary(SharedDictionary
+					.getOrdinals(mContext));
+		}
 
-		if (word == null)
-			return "";
+		return mPlayedWords;
+
+	}
 
-		StringBuilder sb = new StringBuilder();
-		for (int i : word) {
-			sb.append(mGrid[i].mLetter);
+	/*
+	 * Bring the state that follows the current word up to date with it: the
+	 * points it would score, and the dictionary cursor if there is one. Only
+	 * the tiles after the prefix the word has in common with the tiles last
+	 * seen are removed and added, so moving one tile costs the same however
+	 * long the word is.
+	 */
+	private void updateWord() {
+
+		if (mWordTiles == null) {
+			mWordTiles = new int[GRID_ITEMS];
+			mWordPlayer1Points = new int[GRID_ITEMS + 1];
+			mWordPlayer2Points = new int[GRID_ITEMS + 1];
 		}
-		return sb.toString();
+
+		int length = mWordLength;
+
+		int common = 0;
+		while (common < length && common < mWordDepth
+				&& mWordTiles[common] == mWord[common]) {
+			++common;
+		}
+
+		if (mDictionaryCursor != null) {
+			for (int i = mWordDepth; i > common; --i) {
+				mDictionaryCursor.pop();
+			}
+		}
+
+		for (int i = common; i < length; ++i) {
+
+			if (i == mWordTiles.length)
+				growWord();
+
+			int tile = mWord[i];
+			mWordTiles[i] = tile;
+			if (mDictionaryCursor != null)
+				mDictionaryCursor.push((char) mLetters[tile]);
+
+			// The points for the word so far, plus this tile
+			int p1Points = mWordPlayer1Points[i];
+			int p2Points = mWordPlayer2Points[i];
+			boolean player1Owned = BitSets.get(mPlayer1Owned, tile);
+			boolean player2Owned = BitSets.get(mPlayer2Owned, tile);
+
+			if (mGameState == GameState.PLAYER1_TURN) {
+				if (!player1Owned && !player2Owned) {
+					++p1Points;
+				} else if (player2Owned
+						&& !BitSets.get(mPlayer2Surrounded, tile)) {
+					++p1Points;
+					--p2Points;
+				}
+			} else if (mGameState == GameState.PLAYER2_TURN) {
+				if (!player1Owned && !player2Owned) {
+					++p2Points;
+				} else if (player1Owned
+						&& !BitSets.get(mPlayer1Surrounded, tile)) {
+					++p2Points;
+					--p1Points;
+				}
+			}
+
+			mWordPlayer1Points[i + 1] = p1Points;
+			mWordPlayer2Points[i + 1] = p2Points;
+
+		}
+
+		mWordDepth = length;
+
+	}
+
+	/*
+	 * Called when the grid or the player to move changes, since the points
+	 * for the tiles seen so far may no longer be right.
+	 */
+	private void invalidateWord() {
+		mWordDepth = 0;
+		if (mDictionaryCursor != null)
+			mDictionaryCursor.reset();
 	}
 
-	private Letter[] generateRandomLetterGrid() {
+	private void growWord() {
+
+		int capacity = mWordTiles.length * 2;
+
+		int[] tiles = new int[capacity];
+		System.arraycopy(mWordTiles, 0, tiles, 0, mWordTiles.length);
+		mWordTiles = tiles;
+
+		int[] points = new int[capacity + 1];
+		System.arraycopy(mWordPlayer1Points, 0, points, 0,
+				mWordPlayer1Points.length);
+		mWordPlayer1Points = points;
 
-		Letter[] grid = new Letter[GRID_ITEMS];
+		points = new int[capacity + 1];
+		System.arraycopy(mWordPlayer2Points, 0, points, 0,
+				mWordPlayer2Points.length);
+		mWordPlayer2Points = points;
+
+	}
+
+	/*
+	 * Create the dictionary cursor the first time it is needed, so that the
+	 * dictionary is not loaded just to show the points for a word, and move
+	 * it onto the current word.
+	 */
+	private void updateDictionaryCursor() {
+
+		updateWord();
+
+		if (!mDictionaryCursorCreated && mContext != null) {
+			mDictionaryCursorCreated = true;
+			Dictionary dictionary = SharedDictionary.get(mContext);
+			if (dictionary instanceof TrieCursor.Source) {
+				mDictionaryCursor = ((TrieCursor.Source) dictionary)
+						.newCursor();
+				for (int i = 0; i < mWordDepth; ++i) {
+					mDictionaryCursor.push((char) mLetters[mWordTiles[i]]);
+				}
+			}
+		}
+
+	}
+
+	/*
+	 * Saves the state before a move on the undo stack, growing it if it is
+	 * full.
+	 */
+	private void pushUndo() {
+
+		if (mUndoStates == null || mUndoDepth == mUndoStates.length)
+			growUndo();
+
+		int length = mPlayer1Owned.length;
+		int offset = mUndoDepth * UNDO_MASKS * length;
+		System.arraycopy(mPlayer1Owned, 0, mUndoMasks, offset, length);
+		System.arraycopy(mPlayer2Owned, 0, mUndoMasks, offset + length, length);
+		System.arraycopy(mPlayer1Surrounded, 0, mUndoMasks, offset + 2
+				* length, length);
+		System.arraycopy(mPlayer2Surrounded, 0, mUndoMasks, offset + 3
+				* length, length);
+
+		int values = mUndoDepth * UNDO_VALUES;
+		mUndoValues[values + UNDO_PLAYER1_POINTS] = mPlayer1Points;
+		mUndoValues[values + UNDO_PLAYER2_POINTS] = mPlayer2Points;
+		mUndoValues[values + UNDO_HAS_PASSED] = mHasPassed ? 1 : 0;
+		mUndoValues[values + UNDO_MOVE_WORDS] = mMoveWordCount;
+		mUndoStates[mUndoDepth] = mGameState;
+		mUndoResults[mUndoDepth] = mGameResult;
+
+		++mUndoDepth;
+
+	}
+
+	private void growUndo() {
+
+		int capacity = (mUndoStates == null) ? INITIAL_UNDO_CAPACITY
+				: mUndoStates.length * 2;
+
+		long[] masks = new long[capacity * UNDO_MASKS * mPlayer1Owned.length];
+		int[] values = new int[capacity * UNDO_VALUES];
+		GameState[] states = new GameState[capacity];
+		GameResult[] results = new GameResult[capacity];
+		// One word at most for each move
+		int[] words = new int[capacity];
+		String[] wordStrings = new String[capacity];
+
+		if (mUndoStates != null) {
+			System.arraycopy(mUndoMasks, 0, masks, 0, mUndoMasks.length);
+			System.arraycopy(mUndoValues, 0, values, 0, mUndoValues.length);
+			System.arraycopy(mUndoStates, 0, states, 0, mUndoStates.length);
+			System.arraycopy(mUndoResults, 0, results, 0, mUndoResults.length);
+			System.arraycopy(mMoveWords, 0, words, 0, mMoveWords.length);
+			System.arraycopy(mMoveWordStrings, 0, wordStrings, 0,
+					mMoveWordStrings.length);
+		}
+
+		mUndoMasks = masks;
+		mUndoValues = values;
+		mUndoStates = states;
+		mUndoResults = results;
+		mMoveWords = words;
+		mMoveWordStrings = wordStrings;
+
+	}
+
+	private void checkNoMovesMade() {
+		if (mUndoDepth > 0)
+			throw new IllegalStateException("Moves must be unmade first");
+	}
+
+	private CaptureTracker getCaptureTracker() {
+		if (mCaptureTracker == null)
+			mCaptureTracker = new CaptureTracker(mColumns, mRows,
+					mPlayer1Owned, mPlayer2Owned, mPlayer1Surrounded,
+					mPlayer2Surrounded);
+		return mCaptureTracker;
+	}
+
+	private void ensureWordCapacity(int length) {
+		if (length > mWord.length)
+			mWord = new int[Math.max(length, mWord.length * 2)];
+	}
+
+	/*
+	 * A view of the letters of the current word.
+	 */
+	private class WordSequence implements CharSequence {
+
+		@Override
+		public int length() {
+			return mWordLength;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= mWordLength)
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			return (char) mLetters[mWord[index]];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[mWordLength];
+			for (int i = 0; i < mWordLength; ++i) {
+				chars[i] = (char) mLetters[mWord[i]];
+			}
+			return new String(chars);
+		}
+
+	}
+
+	private static void checkGridDimensions(int columns, int rows) {
+		if (columns < MIN_GRID_DIMENSION || columns > MAX_GRID_DIMENSION
+				|| rows < MIN_GRID_DIMENSION || rows > MAX_GRID_DIMENSION)
+			throw new IllegalArgumentException("Invalid board size " + columns
+					+ "x" + rows);
+	}
+
+	private static byte[] generateRandomLetterGrid(int tiles) {
+
+		byte[] grid = new byte[tiles];
 
 		Random r = new Random();
 
+		// The same proportion of vowels as a standard board, rounded
+		int vowels = (tiles * NUMBER_OF_VOWELS_ON_BOARD + GRID_ITEMS / 2)
+				/ GRID_ITEMS;
+
 		boolean hasU = false;
-		List<Integer> v = new LinkedList<Integer>();
-		while (v.size() < NUMBER_OF_VOWELS_ON_BOARD) {
-			int index = r.nextInt(GRID_ITEMS);
-			if (!v.contains(index))
+		long[] v = BitSets.create(tiles);
+		while (vowels > 0) {
+			int index = r.nextInt(tiles);
+			if (!BitSets.get(v, index))
 			{
-				v.add(index);
+				BitSets.set(v, index);
+				--vowels;
 				// pick a random vowel
 				int pos = r.nextInt(VOWELS.length());
 				char c = VOWELS.charAt(pos);
-				grid[index] = new Letter(c);
+				grid[index] = (byte) c;
 				hasU = hasU || (c == 'U');
 			}
 		}
 
-		for (int i = 0; i < GRID_ITEMS; ++i) {
-			if ( ! v.contains(i)) {
+		for (int i = 0; i < tiles; ++i) {
+			if ( ! BitSets.get(v, i)) {
 				// pick a random consonant, but skip Q unless we have a U
 				int consonantChoices = CONSONANTS.length() - (hasU ? 0 : 1);
 				int pos = r.nextInt(consonantChoices);
 				char c = CONSONANTS.charAt(pos);
-				grid[i] = new Letter(c);
+				grid[i] = (byte) c;
 			}
 		}
 
@@ -324,106 +1084,79 @@ public class GameModel implements Serializable {
 	 */
 	private void makeCaptures() {
 
-		for (int tile = 0; tile < GRID_ITEMS; ++tile) {
-
-			LetterState currentTileState = mGrid[tile].mLetterState;
-
-			final int left = tile - 1;
-			final int right = tile + 1;
-			final int above = tile - GRID_COLUMNS;
-			final int below = tile + GRID_COLUMNS;
+		CaptureTracker tracker = getCaptureTracker();
+		int player1Tiles = tracker.getOwnedCount(CaptureTracker.PLAYER1);
+		int player2Tiles = tracker.getOwnedCount(CaptureTracker.PLAYER2);
 
-			Letter[] surrounding = new Letter[4];
+		tracker.makeCaptures();
 
-			surrounding[0] = (left >= 0 && left % GRID_COLUMNS < tile
-					% GRID_COLUMNS) ? mGrid[left] : null;
-			surrounding[1] = (tile % GRID_COLUMNS < right % GRID_COLUMNS) ? mGrid[right]
-					: null;
-			surrounding[2] = (above >= 0) ? mGrid[above] : null;
-			surrounding[3] = (below < GRID_ITEMS) ? mGrid[below] : null;
+		mPlayer1Points += tracker.getOwnedCount(CaptureTracker.PLAYER1)
+				- player1Tiles;
+		mPlayer2Points += tracker.getOwnedCount(CaptureTracker.PLAYER2)
+				- player2Tiles;
 
-			boolean player1Surrounded = true;
-			boolean player2Surrounded = true;
-
-			for (int i = 0; i < 4; ++i) {
-
-				player1Surrounded &= (surrounding[i] == null
-						|| surrounding[i].mLetterState == LetterState.PLAYER1_OWNED || surrounding[i].mLetterState == LetterState.PLAYER1_SURROUNDED);
-
-				player2Surrounded &= (surrounding[i] == null
-						|| surrounding[i].mLetterState == LetterState.PLAYER2_OWNED || surrounding[i].mLetterState == LetterState.PLAYER2_SURROUNDED);
+	}
 
-			}
+	private void setLetterState(int tile, LetterState state) {
 
-			// Owners: player 1: 1, player 2: -1, neutral: 0
-			int oldOwner = getOwner(tile);
-			if (player1Surrounded) {
-				mGrid[tile].mLetterState = LetterState.PLAYER1_SURROUNDED;
-			} else if (!player1Surrounded
-					&& currentTileState == LetterState.PLAYER1_SURROUNDED) {
-				mGrid[tile].mLetterState = LetterState.PLAYER1_OWNED;
-			} else if (player2Surrounded) {
-				mGrid[tile].mLetterState = LetterState.PLAYER2_SURROUNDED;
-			} else if (!player2Surrounded
-					&& currentTileState == LetterState.PLAYER2_SURROUNDED) {
-				mGrid[tile].mLetterState = LetterState.PLAYER2_OWNED;
-			}
-			int newOwner = getOwner(tile);
-			if (newOwner != oldOwner) {
-				if (oldOwner == 1) {
-					mPlayer1Points -= oldOwner;
-				} else {
-					mPlayer2Points += oldOwner;
-				}
-				if (newOwner == 1) {
-					mPlayer1Points += newOwner;
-				} else {
-					mPlayer2Points -= newOwner;
-				}
-			}
-		}
-	}
+		BitSets.clear(mPlayer1Owned, tile);
+		BitSets.clear(mPlayer2Owned, tile);
+		BitSets.clear(mPlayer1Surrounded, tile);
+		BitSets.clear(mPlayer2Surrounded, tile);
 
-	/**
-	 * Look up who owns a tile.
-	 * @param tile - the index of the tile to look at.
-	 * @return 1 for player 1, -1 for player 2, 0 for neutral.
-	 */
-	private int getOwner(int tile) {
-		int oldOwner;
-		switch (mGrid[tile].mLetterState) {
+		switch (state) {
 		case PLAYER1_SURROUNDED:
+			BitSets.set(mPlayer1Owned, tile);
+			BitSets.set(mPlayer1Surrounded, tile);
+			break;
 		case PLAYER1_OWNED:
-			oldOwner = 1;
+			BitSets.set(mPlayer1Owned, tile);
 			break;
 		case PLAYER2_SURROUNDED:
+			BitSets.set(mPlayer2Owned, tile);
+			BitSets.set(mPlayer2Surrounded, tile);
+			break;
 		case PLAYER2_OWNED:
-			oldOwner = -1;
+			BitSets.set(mPlayer2Owned, tile);
 			break;
 		default:
-			oldOwner = 0;
 			break;
 		}
-		return oldOwner;
+
 	}
 
-	private TurnResult applyRules(String word) {
+	/*
+	 * A tile in the original format of saved games, which stored the grid as
+	 * an array of these. Only used to read those games.
+	 */
+	private static final class Letter implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private char mLetter;
+		private LetterState mLetterState;
+
+	}
+
+	private TurnResult applyRules(CharSequence word) {
 
 		// Rule 1. Word must be two or more characters
 		if (word.length() < 2)
 			return TurnResult.WORD_LESS_THAN_TWO_LETTERS;
 
+		// The cursors already follow the word, so the rules need no further
+		// traversal of the played words or the dictionary
+
 		// Rule 2. Word must not have been played already
-		if (mPlayedWords.contains(word))
+		if (isWordPlayed())
 			return TurnResult.WORD_ALREADY_PLAYED;
 
 		// Rule 3. Word must not be a suffix of a previously played word
-		if (mPlayedWords.containsPrefix(word))
+		if (isWordPrefixOfPlayedWord())
 			return TurnResult.WORD_IS_PREFIX_OF_PREVIOUS_TURN;
 
 		// Rule 4. Word must be in the English dictionary
-		WordList db = new WordList(mContext);
-		if (!db.wordInDictionary(word))
+		if (!isWordInDictionary())
 			return TurnResult.WORD_NOT_IN_DICTIONARY;
 
 		return TurnResult.SUCCESS;
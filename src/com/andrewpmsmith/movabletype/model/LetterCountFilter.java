@@ -0,0 +1,202 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A brute force alternative to AnagramIndex that finds every word that can be
+ * made from a set of letters by checking each word in turn.
+ *
+ * Each word's letter counts are packed into two longs as 4 bit counters, 16
+ * letters (A to P) in the low long and 10 letters (Q to Z) in the high long,
+ * along with a 26 bit mask of the letters present. Setting the top bit of
+ * each of the available counters and subtracting the word's counters leaves
+ * every top bit set only if no counter borrowed, i.e. only if the word fits.
+ * Checking a word therefore takes a few bitwise operations and never looks at
+ * its characters.
+ *
+ * Counters only hold values up to 7 for the borrow trick to work. Available
+ * counts are clamped to 7, and the rare word with more than 7 of a letter is
+ * kept in a separate list and checked letter by letter.
+ */
+public final class LetterCountFilter {
+
+	private static final int ALPHABET_SIZE = Dawg.ALPHABET_SIZE;
+	private static final int LOW_LETTERS = 16;
+	private static final int BITS_PER_COUNTER = 4;
+	private static final int MAX_COUNT = 7;
+	private static final long LOW_GUARD_BITS = 0x8888888888888888L;
+	private static final long HIGH_GUARD_BITS = 0x0000008888888888L;
+
+	private final long[] mLowCounts;
+	private final long[] mHighCounts;
+	private final int[] mMasks;
+	private final String[] mWords;
+	private final String[] mOverflowWords;
+
+	private LetterCountFilter(List<String> words) {
+
+		List<String> packed = new ArrayList<String>(words.size());
+		List<String> overflow = new ArrayList<String>();
+		int[] counts = new int[ALPHABET_SIZE];
+
+		for (String word : words) {
+			if (!WordListReader.isUpperCaseWord(word))
+				continue;
+			if (countLetters(word, counts) > MAX_COUNT) {
+				overflow.add(word);
+			} else {
+				packed.add(word);
+			}
+		}
+
+		int size = packed.size();
+		mLowCounts = new long[size];
+		mHighCounts = new long[size];
+		mMasks = new int[size];
+		mWords = packed.toArray(new String[size]);
+		mOverflowWords = overflow.toArray(new String[overflow.size()]);
+
+		for (int i = 0; i < size; ++i) {
+			countLetters(mWords[i], counts);
+			mLowCounts[i] = packLow(counts);
+			mHighCounts[i] = packHigh(counts);
+			mMasks[i] = presenceMask(counts);
+		}
+
+	}
+
+	/**
+	 * Create a filter containing the given words. Words containing characters
+	 * other than A to Z are ignored.
+	 */
+	public static LetterCountFilter create(List<String> words) {
+		return new LetterCountFilter(words);
+	}
+
+	/**
+	 * Create a filter from a word list in the same text format as
+	 * res/raw/wordlist.txt. The stream is closed before returning.
+	 */
+	public static LetterCountFilter read(InputStream is) throws IOException {
+		return new LetterCountFilter(WordListReader.readWords(is));
+	}
+
+	public int getWordCount() {
+		return mWords.length + mOverflowWords.length;
+	}
+
+	/**
+	 * Pass every word that can be made from the given letters to the visitor.
+	 * Each letter may be used as many times as it is counted.
+	 *
+	 * @param letterCounts
+	 *            the number of each letter available, indexed from 'A'. The
+	 *            array is not modified.
+	 * @return false if the visitor stopped the search early.
+	 */
+	public boolean findWords(int[] letterCounts, WordVisitor visitor) {
+
+		int[] clamped = new int[ALPHABET_SIZE];
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			clamped[i] = Math.min(letterCounts[i], MAX_COUNT);
+		}
+
+		final long low = packLow(clamped) | LOW_GUARD_BITS;
+		final long high = packHigh(clamped) | HIGH_GUARD_BITS;
+		final int missing = ~presenceMask(clamped);
+
+		final long[] lowCounts = mLowCounts;
+		final long[] highCounts = mHighCounts;
+		final int[] masks = mMasks;
+
+		for (int i = 0; i < masks.length; ++i) {
+
+			long borrows = (((low - lowCounts[i]) & LOW_GUARD_BITS) ^ LOW_GUARD_BITS)
+					| (((high - highCounts[i]) & HIGH_GUARD_BITS) ^ HIGH_GUARD_BITS)
+					| (masks[i] & missing);
+
+			if (borrows == 0 && !visitor.visitWord(mWords[i]))
+				return false;
+		}
+
+		int[] counts = new int[ALPHABET_SIZE];
+		for (String word : mOverflowWords) {
+			countLetters(word, counts);
+			boolean fits = true;
+			for (int i = 0; i < ALPHABET_SIZE; ++i) {
+				fits &= counts[i] <= letterCounts[i];
+			}
+			if (fits && !visitor.visitWord(word))
+				return false;
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Find every word that can be made from the given letters.
+	 */
+	public List<String> findWords(int[] letterCounts) {
+
+		final List<String> words = new ArrayList<String>();
+
+		findWords(letterCounts, new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				words.add(word);
+				return true;
+			}
+
+		});
+
+		return words;
+
+	}
+
+	/*
+	 * Fill counts with the number of each letter in the word.
+	 *
+	 * @return the highest count.
+	 */
+	private static int countLetters(String word, int[] counts) {
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			counts[i] = 0;
+		}
+		int max = 0;
+		for (int i = 0; i < word.length(); ++i) {
+			max = Math.max(max, ++counts[word.charAt(i) - 'A']);
+		}
+		return max;
+	}
+
+	private static long packLow(int[] counts) {
+		long packed = 0;
+		for (int i = 0; i < LOW_LETTERS; ++i) {
+			packed |= (long) counts[i] << (i * BITS_PER_COUNTER);
+		}
+		return packed;
+	}
+
+	private static long packHigh(int[] counts) {
+		long packed = 0;
+		for (int i = LOW_LETTERS; i < ALPHABET_SIZE; ++i) {
+			packed |= (long) counts[i] << ((i - LOW_LETTERS) * BITS_PER_COUNTER);
+		}
+		return packed;
+	}
+
+	private static int presenceMask(int[] counts) {
+		int mask = 0;
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			if (counts[i] > 0)
+				mask |= 1 << i;
+		}
+		return mask;
+	}
+
+}
@@ -0,0 +1,301 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A Dawg that is navigated directly in a memory mapped file written by
+ * Dawg.write(..), rather than being copied onto the heap.
+ *
+ * The node and edge arrays are read with absolute ByteBuffer reads, so the
+ * heap holds only this object however large the word list is. The operating
+ * system pages the file in as it is used, can drop those pages again under
+ * memory pressure, and shares them between processes that map the same
+ * file. This makes it suitable for word lists of millions of words.
+ *
+ * Words are numbered from the counts stored with each node, as Dawg does.
+ */
+public final class MappedDawg extends AbstractDictionary implements
+		TrieCursor.Source, WordOrdinals {
+
+	// magic, version, word count, node count, edge count
+	static final int HEADER_BYTES = 5 * 4;
+
+	private final ByteBuffer mBuffer;
+	private final int mWordCount;
+	private final int mNodeCount;
+	private final int mEdgeCount;
+	private final int mMasksOffset;
+	private final int mFirstEdgesOffset;
+	private final int mEdgesOffset;
+	private final int mWordCountsOffset;
+
+	private MappedDawg(ByteBuffer buffer) throws IOException {
+
+		mBuffer = buffer;
+
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != Dawg.MAGIC)
+			throw new IOException("Not a dictionary file");
+		int version = buffer.getInt(4);
+		if (version != Dawg.FORMAT_VERSION)
+			throw new IOException("Unsupported dictionary version " + version);
+
+		mWordCount = buffer.getInt(8);
+		mNodeCount = buffer.getInt(12);
+		mEdgeCount = buffer.getInt(16);
+
+		mMasksOffset = HEADER_BYTES;
+		mFirstEdgesOffset = mMasksOffset + mNodeCount * 4;
+		mEdgesOffset = mFirstEdgesOffset + mNodeCount * 4;
+		mWordCountsOffset = mEdgesOffset + mEdgeCount * 4;
+
+		if (mNodeCount < 1 || mEdgeCount < 0
+				|| (long) mEdgesOffset + mEdgeCount * 4L + mNodeCount * 4L != buffer
+						.capacity())
+			throw new IOException("Corrupt dictionary file");
+
+	}
+
+	/**
+	 * Map a dictionary file. The file stays mapped until this object is
+	 * garbage collected, and must not be modified while it is mapped.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be mapped or is not in a supported
+	 *             format.
+	 */
+	public static MappedDawg map(File file) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new MappedDawg(buffer);
+		} finally {
+			// The mapping remains valid after the file is closed
+			raf.close();
+		}
+
+	}
+
+	@Override
+	public boolean wordInDictionary(CharSequence word) {
+
+		if (word == null)
+			return false;
+
+		int node = Dawg.ROOT;
+		for (int i = 0; i < word.length() && node != Dawg.NO_NODE; ++i) {
+			node = child(node, word.charAt(i));
+		}
+
+		return node != Dawg.NO_NODE && (mask(node) & Dawg.TERMINAL) != 0;
+
+	}
+
+	@Override
+	public int getOrdinal(CharSequence word) {
+
+		long path = findPath(word);
+		if (path == Dawg.NO_PATH
+				|| (mask(Dawg.pathNode(path)) & Dawg.TERMINAL) == 0)
+			return NOT_FOUND;
+
+		return Dawg.pathRank(path);
+
+	}
+
+	@Override
+	public String getWord(int ordinal) {
+
+		if (ordinal < 0 || ordinal >= mWordCount)
+			throw new IndexOutOfBoundsException("No word " + ordinal);
+
+		StringBuilder word = new StringBuilder();
+		int node = Dawg.ROOT;
+
+		// As Dawg.getWord(..)
+		while (true) {
+
+			int mask = mask(node);
+			if ((mask & Dawg.TERMINAL) != 0) {
+				if (ordinal == 0)
+					return word.toString();
+				--ordinal;
+			}
+
+			int edge = firstEdge(node);
+			for (int i = 0; i < Dawg.ALPHABET_SIZE; ++i) {
+				if ((mask & (1 << i)) != 0) {
+					int child = edge(edge++);
+					int count = wordCount(child);
+					if (ordinal < count) {
+						word.append((char) (Dawg.FIRST_CHAR + i));
+						node = child;
+						break;
+					}
+					ordinal -= count;
+				}
+			}
+
+		}
+
+	}
+
+	@Override
+	public int getPrefixStart(CharSequence prefix) {
+		long path = findPath(prefix);
+		return (path == Dawg.NO_PATH) ? NOT_FOUND : Dawg.pathRank(path);
+	}
+
+	@Override
+	public int getPrefixEnd(CharSequence prefix) {
+		long path = findPath(prefix);
+		return (path == Dawg.NO_PATH) ? NOT_FOUND : Dawg.pathRank(path)
+				+ wordCount(Dawg.pathNode(path));
+	}
+
+	@Override
+	public TrieCursor newCursor() {
+
+		return new NodeCursor(Dawg.ROOT) {
+
+			@Override
+			protected int child(int node, char c) {
+				return MappedDawg.this.child(node, c);
+			}
+
+			@Override
+			protected boolean isTerminal(int node) {
+				return (mask(node) & Dawg.TERMINAL) != 0;
+			}
+
+		};
+
+	}
+
+	/**
+	 * Pass every word in the dictionary to the visitor, in alphabetical
+	 * order.
+	 *
+	 * @return false if the visitor stopped the enumeration early.
+	 */
+	public boolean visitWords(WordVisitor visitor) {
+		return visitWords(Dawg.ROOT, new StringBuilder(), visitor);
+	}
+
+	private boolean visitWords(int node, StringBuilder prefix,
+			WordVisitor visitor) {
+
+		int mask = mask(node);
+
+		if ((mask & Dawg.TERMINAL) != 0 && !visitor.visitWord(prefix.toString()))
+			return false;
+
+		int edge = firstEdge(node);
+		int length = prefix.length();
+		for (int i = 0; i < Dawg.ALPHABET_SIZE; ++i) {
+			if ((mask & (1 << i)) != 0) {
+				prefix.append((char) (Dawg.FIRST_CHAR + i));
+				boolean more = visitWords(edge(edge++), prefix, visitor);
+				prefix.setLength(length);
+				if (!more)
+					return false;
+			}
+		}
+
+		return true;
+
+	}
+
+	public int getWordCount() {
+		return mWordCount;
+	}
+
+	public int getNodeCount() {
+		return mNodeCount;
+	}
+
+	public int getEdgeCount() {
+		return mEdgeCount;
+	}
+
+	private int mask(int node) {
+		return mBuffer.getInt(mMasksOffset + node * 4);
+	}
+
+	private int firstEdge(int node) {
+		return mBuffer.getInt(mFirstEdgesOffset + node * 4);
+	}
+
+	private int edge(int edge) {
+		return mBuffer.getInt(mEdgesOffset + edge * 4);
+	}
+
+	private int wordCount(int node) {
+		return mBuffer.getInt(mWordCountsOffset + node * 4);
+	}
+
+	/*
+	 * Follow the prefix from the root, as Dawg.findPath(..).
+	 */
+	private long findPath(CharSequence prefix) {
+
+		if (prefix == null)
+			return Dawg.NO_PATH;
+
+		int node = Dawg.ROOT;
+		int rank = 0;
+		for (int i = 0; i < prefix.length(); ++i) {
+
+			int index = prefix.charAt(i) - Dawg.FIRST_CHAR;
+			if (index < 0 || index >= Dawg.ALPHABET_SIZE)
+				return Dawg.NO_PATH;
+
+			int mask = mask(node);
+			int bit = 1 << index;
+			if ((mask & bit) == 0)
+				return Dawg.NO_PATH;
+
+			if ((mask & Dawg.TERMINAL) != 0)
+				++rank;
+			int edge = firstEdge(node);
+			int end = edge + Integer.bitCount(mask & (bit - 1));
+			while (edge < end) {
+				rank += wordCount(edge(edge++));
+			}
+			node = edge(edge);
+		}
+
+		if (wordCount(node) == 0)
+			return Dawg.NO_PATH;
+
+		return ((long) rank << 32) | node;
+
+	}
+
+	/*
+	 * Follow the edge labelled with the given letter, as Dawg.child(..).
+	 */
+	private int child(int node, char c) {
+
+		int index = c - Dawg.FIRST_CHAR;
+		if (index < 0 || index >= Dawg.ALPHABET_SIZE)
+			return Dawg.NO_NODE;
+
+		int mask = mask(node);
+		int bit = 1 << index;
+		if ((mask & bit) == 0)
+			return Dawg.NO_NODE;
+
+		return edge(firstEdge(node) + Integer.bitCount(mask & (bit - 1)));
+
+	}
+
+}
@@ -0,0 +1,390 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * Scores the moves found by a MoveGenerator, choosing for each the tiles that
+ * give the player to move the greatest lead over their opponent once the
+ * word has been played and the captures made.
+ *
+ * Only the set of tiles that change owner matters: tiles the player already
+ * owns and surrounded tiles are left as they are when a word is played. The
+ * other tiles a word could use are its candidates, and the evaluator works
+ * with sets of candidates as bit masks. Playing a set of candidates that
+ * holds another set can never do worse, since each tile the player owns
+ * only helps them surround tiles and stops their opponent doing so. Letters
+ * with no more candidates than uses therefore take all of them, and the
+ * rest are chosen by a branch and bound search over their candidates. The
+ * bound at each step is the result of playing every tile that has not yet
+ * been ruled out, which is exact once every letter has been decided.
+ *
+ * Each result comes from running a CaptureEngine on the grid, and is
+ * remembered by the mask of tiles played until the game is changed, so the
+ * words that share their tiles, such as anagrams, are scored once.
+ *
+ * An evaluator allocates nothing after it is constructed, and must not be
+ * used by more than one thread at a time.
+ */
+public final class MoveEvaluator {
+
+	private static final int ALPHABET_SIZE = Dawg.ALPHABET_SIZE;
+	// The number of results remembered; a power of two
+	private static final int MEMO_SIZE = 1024;
+	private static final int MAX_PROBES = 8;
+
+	private final int mColumns;
+	private final int mRows;
+	private final int mLength;
+	private final CaptureEngine mEngine;
+
+	// The game as given to setGame(..)
+	private final long[] mPlayer1Owned;
+	private final long[] mPlayer2Owned;
+	private final long[] mPlayer1Surrounded;
+	private final long[] mPlayer2Surrounded;
+	private boolean mPlayer1ToMove;
+	private int mDifference;
+	private boolean mHasGame;
+
+	// The grid as a set of tiles is played
+	private final long[] mWorkPlayer1Owned;
+	private final long[] mWorkPlayer2Owned;
+	private final long[] mWorkPlayer1Surrounded;
+	private final long[] mWorkPlayer2Surrounded;
+
+	// The letters with more candidates than uses, the range of each in
+	// mChoiceTiles and the number of their candidates to play
+	private final int[] mChoiceTiles;
+	private final int[] mGroupStarts = new int[ALPHABET_SIZE + 1];
+	private final int[] mGroupQuotas = new int[ALPHABET_SIZE];
+	private int mGroupCount;
+
+	private final int[] mLetterUses = new int[ALPHABET_SIZE];
+	private final long[] mPlayed;
+	private final long[] mBestPlayed;
+	private int mBestGain;
+
+	private final long[] mMemoKeys;
+	private final int[] mMemoGains;
+	private final int[] mMemoStamps;
+	private int mStamp = 1;
+
+	public MoveEvaluator(int columns, int rows) {
+
+		mColumns = columns;
+		mRows = rows;
+		mEngine = new CaptureEngine(columns, rows);
+		mLength = mEngine.getMaskLength();
+
+		mPlayer1Owned = new long[mLength];
+		mPlayer2Owned = new long[mLength];
+		mPlayer1Surrounded = new long[mLength];
+		mPlayer2Surrounded = new long[mLength];
+
+		mWorkPlayer1Owned = new long[mLength];
+		mWorkPlayer2Owned = new long[mLength];
+		mWorkPlayer1Surrounded = new long[mLength];
+		mWorkPlayer2Surrounded = new long[mLength];
+
+		mChoiceTiles = new int[mEngine.getTileCount()];
+		mPlayed = new long[mLength];
+		mBestPlayed = new long[mLength];
+
+		mMemoKeys = new long[MEMO_SIZE * mLength];
+		mMemoGains = new int[MEMO_SIZE];
+		mMemoStamps = new int[MEMO_SIZE];
+
+	}
+
+	/**
+	 * Score moves in the current state of the game, for the player to move.
+	 * This must be called again whenever the game changes.
+	 */
+	public void setGame(GameModel game) {
+
+		if (game.getGridWidth() != mColumns || game.getGridHeight() != mRows)
+			throw new IllegalArgumentException("Game is not "
+					+ mColumns + "x" + mRows);
+		if (game.getGameState() == GameModel.GameState.GAME_OVER)
+			throw new IllegalArgumentException("Game is over");
+
+		game.copyMasks(mPlayer1Owned, mPlayer2Owned, mPlayer1Surrounded,
+				mPlayer2Surrounded);
+		mPlayer1ToMove = game.getGameState() == GameModel.GameState.PLAYER1_TURN;
+		mDifference = getDifference(mPlayer1Owned, mPlayer2Owned);
+		mHasGame = true;
+
+		if (++mStamp == 0) {
+			for (int i = 0; i < MEMO_SIZE; ++i) {
+				mMemoStamps[i] = 0;
+			}
+			mStamp = 1;
+		}
+
+	}
+
+	/**
+	 * Find the best tiles for a move.
+	 *
+	 * @param move
+	 *            a move found by a MoveGenerator for the game last given to
+	 *            setGame(..).
+	 * @param tiles
+	 *            if not null, receives the tile for each letter of the word,
+	 *            ready to be passed to GameModel.setWord(..).
+	 * @return the change in the player's score minus the change in their
+	 *         opponent's, after captures, when the word is played on the
+	 *         best tiles.
+	 */
+	public int evaluate(MoveGenerator.Move move, int[] tiles) {
+
+		if (!mHasGame)
+			throw new IllegalStateException("No game to evaluate");
+
+		final int length = move.length();
+		final String word = move.getWord();
+
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			mLetterUses[i] = 0;
+		}
+		for (int i = 0; i < length; ++i) {
+			++mLetterUses[word.charAt(i) - 'A'];
+		}
+		for (int i = 0; i < mLength; ++i) {
+			mPlayed[i] = 0;
+		}
+
+		// Play every candidate, noting the letters with a choice to make
+		mGroupCount = 0;
+		int choices = 0;
+		for (int position = 0; position < length; ++position) {
+
+			int letter = word.charAt(position) - 'A';
+			int uses = mLetterUses[letter];
+			if (uses == 0)
+				continue; // already seen
+			mLetterUses[letter] = 0;
+
+			int candidates = 0;
+			int count = move.getTileChoiceCount(position);
+			for (int i = 0; i < count; ++i) {
+				int tile = move.getTileChoice(position, i);
+				if (isCandidate(tile)) {
+					BitSets.set(mPlayed, tile);
+					++candidates;
+				}
+			}
+
+			if (candidates > uses) {
+
+				// Try the opponent's tiles first, as they are worth the most
+				mGroupStarts[mGroupCount] = choices;
+				mGroupQuotas[mGroupCount] = uses;
+				for (int i = 0; i < count; ++i) {
+					int tile = move.getTileChoice(position, i);
+					if (isCandidate(tile) && isOpponents(tile))
+						mChoiceTiles[choices++] = tile;
+				}
+				for (int i = 0; i < count; ++i) {
+					int tile = move.getTileChoice(position, i);
+					if (isCandidate(tile) && !isOpponents(tile))
+						mChoiceTiles[choices++] = tile;
+				}
+				++mGroupCount;
+
+			}
+
+		}
+		mGroupStarts[mGroupCount] = choices;
+
+		mBestGain = Integer.MIN_VALUE;
+		search(0, mGroupStarts[0], (mGroupCount > 0) ? mGroupQuotas[0] : 0,
+				getGain(mPlayed));
+
+		if (tiles != null)
+			getTiles(move, tiles);
+
+		return mBestGain;
+
+	}
+
+	/*
+	 * Decide whether to play each candidate of a group in turn. mPlayed
+	 * holds the candidates chosen and those not yet decided, and bound is
+	 * the gain from playing them.
+	 */
+	private void search(int group, int index, int quota, int bound) {
+
+		if (bound <= mBestGain)
+			return;
+
+		if (group == mGroupCount) {
+			// Every candidate has been decided, so the bound is exact
+			mBestGain = bound;
+			System.arraycopy(mPlayed, 0, mBestPlayed, 0, mLength);
+			return;
+		}
+
+		int end = mGroupStarts[group + 1];
+		int nextQuota = (group + 1 < mGroupCount) ? mGroupQuotas[group + 1]
+				: 0;
+
+		if (quota == 0) {
+
+			// The rest of the group are not played
+			for (int i = index; i < end; ++i) {
+				BitSets.clear(mPlayed, mChoiceTiles[i]);
+			}
+			search(group + 1, end, nextQuota, getGain(mPlayed));
+			for (int i = index; i < end; ++i) {
+				BitSets.set(mPlayed, mChoiceTiles[i]);
+			}
+
+		} else if (end - index == quota) {
+
+			// The rest of the group are all played
+			search(group + 1, end, nextQuota, bound);
+
+		} else {
+
+			int tile = mChoiceTiles[index];
+
+			search(group, index + 1, quota - 1, bound);
+
+			BitSets.clear(mPlayed, tile);
+			search(group, index + 1, quota, getGain(mPlayed));
+			BitSets.set(mPlayed, tile);
+
+		}
+
+	}
+
+	/*
+	 * Fill in the tiles for each letter: the candidates chosen, then tiles
+	 * that do not change owner.
+	 */
+	private void getTiles(MoveGenerator.Move move, int[] tiles) {
+
+		final int length = move.length();
+		final String word = move.getWord();
+
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			mLetterUses[i] = 0;
+		}
+
+		for (int position = 0; position < length; ++position) {
+
+			int use = mLetterUses[word.charAt(position) - 'A']++;
+			int count = move.getTileChoiceCount(position);
+
+			int chosen = 0;
+			for (int i = 0; i < count; ++i) {
+				if (BitSets.get(mBestPlayed, move.getTileChoice(position, i)))
+					++chosen;
+			}
+
+			int skip = (use < chosen) ? use : use - chosen;
+			for (int i = 0; i < count; ++i) {
+				int tile = move.getTileChoice(position, i);
+				boolean wanted = (use < chosen) ? BitSets.get(mBestPlayed,
+						tile) : !isCandidate(tile);
+				if (wanted && skip-- == 0) {
+					tiles[position] = tile;
+					break;
+				}
+			}
+
+		}
+
+	}
+
+	/*
+	 * Returns true if playing the tile would change its owner.
+	 */
+	private boolean isCandidate(int tile) {
+		if (BitSets.get(mPlayer1Surrounded, tile)
+				|| BitSets.get(mPlayer2Surrounded, tile))
+			return false;
+		return !BitSets.get(mPlayer1ToMove ? mPlayer1Owned : mPlayer2Owned,
+				tile);
+	}
+
+	private boolean isOpponents(int tile) {
+		return BitSets.get(mPlayer1ToMove ? mPlayer2Owned : mPlayer1Owned,
+				tile);
+	}
+
+	/*
+	 * Returns the gain from playing a set of tiles, from the memo if
+	 * possible.
+	 */
+	private int getGain(long[] played) {
+
+		long hash = 0;
+		for (int i = 0; i < mLength; ++i) {
+			hash = (hash + played[i]) * 0x9E3779B97F4A7C15L;
+		}
+		int first = (int) (hash ^ (hash >>> 32));
+
+		int slot = first & (MEMO_SIZE - 1);
+		for (int probe = 0; probe < MAX_PROBES; ++probe) {
+
+			slot = (first + probe) & (MEMO_SIZE - 1);
+			if (mMemoStamps[slot] != mStamp)
+				break;
+			if (isMemoKey(slot, played))
+				return mMemoGains[slot];
+
+		}
+
+		// Store the result in the first empty slot, or the last one probed
+		int gain = computeGain(played);
+		System.arraycopy(played, 0, mMemoKeys, slot * mLength, mLength);
+		mMemoGains[slot] = gain;
+		mMemoStamps[slot] = mStamp;
+		return gain;
+
+	}
+
+	private boolean isMemoKey(int slot, long[] played) {
+		int offset = slot * mLength;
+		for (int i = 0; i < mLength; ++i) {
+			if (mMemoKeys[offset + i] != played[i])
+				return false;
+		}
+		return true;
+	}
+
+	private int computeGain(long[] played) {
+
+		for (int i = 0; i < mLength; ++i) {
+			long tiles = played[i];
+			if (mPlayer1ToMove) {
+				mWorkPlayer1Owned[i] = mPlayer1Owned[i] | tiles;
+				mWorkPlayer2Owned[i] = mPlayer2Owned[i] & ~tiles;
+			} else {
+				mWorkPlayer1Owned[i] = mPlayer1Owned[i] & ~tiles;
+				mWorkPlayer2Owned[i] = mPlayer2Owned[i] | tiles;
+			}
+			mWorkPlayer1Surrounded[i] = mPlayer1Surrounded[i];
+			mWorkPlayer2Surrounded[i] = mPlayer2Surrounded[i];
+		}
+
+		mEngine.makeCaptures(mWorkPlayer1Owned, mWorkPlayer2Owned,
+				mWorkPlayer1Surrounded, mWorkPlayer2Surrounded);
+
+		return getDifference(mWorkPlayer1Owned, mWorkPlayer2Owned)
+				- mDifference;
+
+	}
+
+	/*
+	 * Returns the number of tiles the player to move owns minus the number
+	 * their opponent owns. Scores change by the same amounts as these
+	 * counts when a word is played.
+	 */
+	private int getDifference(long[] player1Owned, long[] player2Owned) {
+		int difference = BitSets.count(player1Owned)
+				- BitSets.count(player2Owned);
+		return mPlayer1ToMove ? difference : -difference;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * Finds every word that can be played on the grid of a game, for hints,
+ * computer opponents and analysis of the board.
+ *
+ * Candidate words come from an AnagramIndex, which follows only the letters
+ * that are on the grid, so every candidate is in the dictionary and can be
+ * made from the tiles. A candidate is played if it has two or more letters
+ * and is not the start of, or the same as, a word already played, including
+ * those played with GameModel.makeMove(..), so the moves are exactly the
+ * words for which GameModel.playTurn() succeeds.
+ *
+ * Moves are passed to a visitor as they are found rather than collected, so
+ * the search can be stopped early and large boards do not build large lists.
+ */
+public final class MoveGenerator {
+
+	private static final int ALPHABET_SIZE = Dawg.ALPHABET_SIZE;
+	private static final int MIN_WORD_LENGTH = 2;
+
+	/**
+	 * Receives the moves found by generateMoves(..).
+	 */
+	public interface Visitor {
+
+		/**
+		 * @param move
+		 *            the move, which is only valid until this method returns.
+		 * @return true to continue the search, false to stop it.
+		 */
+		public boolean visitMove(Move move);
+
+	}
+
+	/**
+	 * A word that can be played, and the tiles that can be used for each of
+	 * its letters. Every tile holding a letter can be used for it, but a
+	 * word may use each tile only once, so a letter that appears more than
+	 * once in the word must be given a different tile each time.
+	 */
+	public static final class Move {
+
+		private final int[][] mLetterTiles;
+		private String mWord;
+
+		private Move(int[][] letterTiles) {
+			mLetterTiles = letterTiles;
+		}
+
+		public String getWord() {
+			return mWord;
+		}
+
+		public int length() {
+			return mWord.length();
+		}
+
+		/**
+		 * @return the number of tiles that hold the letter at the given
+		 *         position of the word.
+		 */
+		public int getTileChoiceCount(int position) {
+			return getTiles(position).length;
+		}
+
+		/**
+		 * @return a tile that holds the letter at the given position of the
+		 *         word. Tiles are in ascending order of index.
+		 */
+		public int getTileChoice(int position, int choice) {
+			return getTiles(position)[choice];
+		}
+
+		/**
+		 * Fill the array with tiles for the word, giving each letter the
+		 * first tile that holds it and has not been used for an earlier
+		 * letter. The result can be passed to GameModel.setWord(..).
+		 *
+		 * @return the length of the word.
+		 */
+		public int getFirstTiles(int[] tiles) {
+
+			int length = mWord.length();
+			for (int i = 0; i < length; ++i) {
+
+				// Skip the tiles used for the same letter earlier in the word
+				char c = mWord.charAt(i);
+				int used = 0;
+				for (int j = 0; j < i; ++j) {
+					if (mWord.charAt(j) == c)
+						++used;
+				}
+
+				tiles[i] = mLetterTiles[c - 'A'][used];
+
+			}
+
+			return length;
+
+		}
+
+		private int[] getTiles(int position) {
+			return mLetterTiles[mWord.charAt(position) - 'A'];
+		}
+
+	}
+
+	private final AnagramIndex mIndex;
+
+	public MoveGenerator(AnagramIndex index) {
+		mIndex = index;
+	}
+
+	/**
+	 * Pass every word that the player to move could play to the visitor, in
+	 * no particular order. There are no moves once the game is over.
+	 *
+	 * @return false if the visitor stopped the search early.
+	 */
+	public boolean generateMoves(final GameModel game, final Visitor visitor) {
+
+		if (game.getGameState() == GameModel.GameState.GAME_OVER)
+			return true;
+
+		int[] counts = game.getLetterCounts();
+
+		int[][] letterTiles = new int[ALPHABET_SIZE][];
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			letterTiles[i] = new int[counts[i]];
+		}
+		int[] found = new int[ALPHABET_SIZE];
+		for (int tile = 0; tile < game.getGridSize(); ++tile) {
+			int letter = game.getLetter(tile) - 'A';
+			letterTiles[letter][found[letter]++] = tile;
+		}
+
+		final Move move = new Move(letterTiles);
+
+		return mIndex.findWords(counts, new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+
+				// A word is a prefix of itself, so this also rejects the
+				// words already played
+				if (word.length() < MIN_WORD_LENGTH
+						|| game.isPrefixOfPlayedWord(word))
+					return true;
+
+				move.mWord = word;
+				return visitor.visitMove(move);
+
+			}
+
+		});
+
+	}
+
+}
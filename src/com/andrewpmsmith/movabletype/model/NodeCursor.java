@@ -0,0 +1,72 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * A skeletal TrieCursor for structures whose nodes are numbered. The cursor
+ * keeps a stack of the nodes along its string, so pop() only has to drop the
+ * top of the stack.
+ */
+abstract class NodeCursor implements TrieCursor {
+
+	static final int NO_NODE = -1;
+
+	private static final int INITIAL_DEPTH = 16;
+
+	private int[] mNodes = new int[INITIAL_DEPTH];
+	private int mDepth = 0;
+
+	NodeCursor(int root) {
+		mNodes[0] = root;
+	}
+
+	/**
+	 * @return the child of the node for the letter, or NO_NODE.
+	 */
+	protected abstract int child(int node, char c);
+
+	protected abstract boolean isTerminal(int node);
+
+	@Override
+	public boolean push(char c) {
+
+		int node = mNodes[mDepth];
+		int next = (node == NO_NODE) ? NO_NODE : child(node, c);
+
+		if (mDepth + 1 == mNodes.length) {
+			int[] nodes = new int[mNodes.length * 2];
+			System.arraycopy(mNodes, 0, nodes, 0, mNodes.length);
+			mNodes = nodes;
+		}
+		mNodes[++mDepth] = next;
+
+		return next != NO_NODE;
+
+	}
+
+	@Override
+	public void pop() {
+		if (mDepth > 0)
+			--mDepth;
+	}
+
+	@Override
+	public void reset() {
+		mDepth = 0;
+	}
+
+	@Override
+	public int getDepth() {
+		return mDepth;
+	}
+
+	@Override
+	public boolean isWord() {
+		int node = mNodes[mDepth];
+		return node != NO_NODE && isTerminal(node);
+	}
+
+	@Override
+	public boolean isPrefix() {
+		return mNodes[mDepth] != NO_NODE;
+	}
+
+}
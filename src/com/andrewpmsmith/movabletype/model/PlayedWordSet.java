@@ -0,0 +1,358 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The words played in a game, stored as a sorted array of their ordinals in
+ * the dictionary's WordOrdinals rather than as characters. Since ordinals are
+ * alphabetical ranks, the played words starting with a given prefix are
+ * adjacent in the array, so whether a string is the prefix of a played word
+ * is answered by looking up the prefix's range of ordinals and one binary
+ * search.
+ *
+ * A word that has no ordinal, because the table could not be mapped or was
+ * compiled from a different word list than the dictionary that accepted the
+ * word, is kept as a string in a second sorted array and searched in the
+ * same way.
+ *
+ * Sets are immutable: add(..) returns a new set and leaves this one
+ * unchanged, so snapshots of a game can share them.
+ *
+ * Adding a word copies the array, so it takes time and memory in proportion
+ * to the words already played rather than to the length of the word, as
+ * path copying in a tree would. The copy is kept because that number is
+ * small and the copy is rare. A game holds at most one word per turn, a few
+ * dozen in practice, and a word is only added here once per turn, by
+ * GameModel.playTurn(). The moves tried by makeMove(..) during a search are
+ * kept in GameModel's undo arrays and never copy the set. Copying a few
+ * hundred bytes costs no more than allocating the nodes of a path, and
+ * leaves lookups as a binary search of a single array.
+ *
+ * Ordinals change whenever the dictionary is rebuilt, so sets are serialized
+ * as words, in the format written by WordTrie.write(..). A deserialized set
+ * holds those words until withDictionary(..) maps them to ordinals in the
+ * dictionary currently installed.
+ */
+public final class PlayedWordSet implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int[] NO_ORDINALS = new int[0];
+	private static final String[] NO_WORDS = new String[0];
+
+	// Written by writeObject(..) as a list of words
+	private transient WordOrdinals mDictionary;
+	private transient int[] mOrdinals;
+	private transient String[] mWords;
+	private transient String[] mUnresolvedWords;
+
+	/**
+	 * Create an empty set of words from the dictionary.
+	 *
+	 * @param dictionary
+	 *            the ordinals, or null to store every word as a string.
+	 */
+	public PlayedWordSet(WordOrdinals dictionary) {
+		this(dictionary, NO_ORDINALS, NO_WORDS);
+	}
+
+	private PlayedWordSet(WordOrdinals dictionary, int[] ordinals,
+			String[] words) {
+		mDictionary = dictionary;
+		mOrdinals = ordinals;
+		mWords = words;
+	}
+
+	/*
+	 * Returns a set holding the given words, to be mapped to ordinals by
+	 * withDictionary(..). Used to convert games saved in the original format.
+	 */
+	static PlayedWordSet fromWords(List<String> words) {
+		PlayedWordSet set = new PlayedWordSet(null);
+		set.mUnresolvedWords = words.toArray(new String[words.size()]);
+		return set;
+	}
+
+	/**
+	 * @return false if this set has been read from a stream and its words
+	 *         have not yet been mapped to ordinals with withDictionary(..).
+	 */
+	public boolean isResolved() {
+		return mUnresolvedWords == null;
+	}
+
+	/**
+	 * @param dictionary
+	 *            the ordinals, or null to store every word as a string.
+	 * @return a set holding the words in this set, with ordinals from the
+	 *         given dictionary.
+	 */
+	public PlayedWordSet withDictionary(WordOrdinals dictionary) {
+
+		if (dictionary == mDictionary && isResolved())
+			return this;
+
+		String[] words = isResolved() ? getWords() : mUnresolvedWords;
+		PlayedWordSet set = new PlayedWordSet(dictionary);
+		for (String word : words) {
+			set = set.add(word);
+		}
+		return set;
+
+	}
+
+	/**
+	 * @return the ordinals, or null if every word is stored as a string.
+	 */
+	public WordOrdinals getDictionary() {
+		return mDictionary;
+	}
+
+	/**
+	 * @return the ordinal of the word in this set's dictionary, or
+	 *         WordOrdinals.NOT_FOUND if it has none.
+	 */
+	public int getOrdinal(CharSequence word) {
+		return mDictionary != null ? mDictionary.getOrdinal(word)
+				: WordOrdinals.NOT_FOUND;
+	}
+
+	/**
+	 * @return a set holding the words in this set and the given word, or
+	 *         this set if the word is already present. The word is stored as
+	 *         its ordinal if it has one, and as a string otherwise.
+	 */
+	public PlayedWordSet add(CharSequence word) {
+
+		int ordinal = getOrdinal(word);
+		if (ordinal != WordOrdinals.NOT_FOUND)
+			return add(ordinal);
+
+		checkResolved();
+
+		String string = word.toString();
+		int position = Arrays.binarySearch(mWords, string);
+		if (position >= 0)
+			return this;
+
+		position = -(position + 1);
+		String[] words = new String[mWords.length + 1];
+		System.arraycopy(mWords, 0, words, 0, position);
+		words[position] = string;
+		System.arraycopy(mWords, position, words, position + 1, mWords.length
+				- position);
+
+		return new PlayedWordSet(mDictionary, mOrdinals, words);
+
+	}
+
+	/**
+	 * @return a set holding the words in this set and the word with the given
+	 *         ordinal, or this set if the word is already present.
+	 * @throws IllegalArgumentException
+	 *             if the ordinal is WordOrdinals.NOT_FOUND.
+	 */
+	public PlayedWordSet add(int ordinal) {
+
+		checkResolved();
+
+		if (ordinal == WordOrdinals.NOT_FOUND)
+			throw new IllegalArgumentException("Word has no ordinal");
+
+		int position = binarySearch(ordinal);
+		if (position >= 0)
+			return this;
+
+		position = -(position + 1);
+		int[] ordinals = new int[mOrdinals.length + 1];
+		System.arraycopy(mOrdinals, 0, ordinals, 0, position);
+		ordinals[position] = ordinal;
+		System.arraycopy(mOrdinals, position, ordinals, position + 1,
+				mOrdinals.length - position);
+
+		return new PlayedWordSet(mDictionary, ordinals, mWords);
+
+	}
+
+	public boolean contains(int ordinal) {
+		checkResolved();
+		return ordinal != WordOrdinals.NOT_FOUND
+				&& binarySearch(ordinal) >= 0;
+	}
+
+	public boolean contains(CharSequence word) {
+
+		checkResolved();
+
+		if (word == null)
+			return false;
+
+		int ordinal = getOrdinal(word);
+		if (ordinal != WordOrdinals.NOT_FOUND)
+			return contains(ordinal);
+
+		return mWords.length > 0
+				&& Arrays.binarySearch(mWords, word.toString()) >= 0;
+
+	}
+
+	/**
+	 * @return true if the string is the start of, or the same as, a word in
+	 *         the set. The empty string is a prefix of every set.
+	 */
+	public boolean containsPrefix(CharSequence prefix) {
+
+		checkResolved();
+
+		if (prefix == null)
+			return false;
+		if (prefix.length() == 0)
+			return true;
+
+		// Find the first played ordinal in the prefix's range
+		if (mOrdinals.length > 0) {
+			int start = mDictionary.getPrefixStart(prefix);
+			if (start != WordOrdinals.NOT_FOUND) {
+				int position = binarySearch(start);
+				if (position >= 0)
+					return true;
+				position = -(position + 1);
+				if (position < mOrdinals.length
+						&& mOrdinals[position] < mDictionary
+								.getPrefixEnd(prefix))
+					return true;
+			}
+		}
+
+		// Find the first word without an ordinal that does not sort before
+		// the prefix
+		int low = 0;
+		int high = mWords.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (comparePrefix(mWords[middle], prefix) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low < mWords.length && comparePrefix(mWords[low], prefix) == 0;
+
+	}
+
+	public int size() {
+		return isResolved() ? mOrdinals.length + mWords.length
+				: mUnresolvedWords.length;
+	}
+
+	/**
+	 * @return the ordinal of the word at the given position, in alphabetical
+	 *         order, among the words that have ordinals.
+	 */
+	public int getOrdinal(int index) {
+		checkResolved();
+		return mOrdinals[index];
+	}
+
+	/*
+	 * Compare a word to a prefix without allocating. Package-private for
+	 * GameModel.
+	 *
+	 * Returns 0 if the word starts with the prefix, otherwise a negative
+	 * number if the word sorts before the prefix and a positive number if it
+	 * sorts after it.
+	 */
+	static int comparePrefix(String word, CharSequence prefix) {
+
+		int length = word.length();
+		int prefixLength = prefix.length();
+
+		for (int i = 0; i < prefixLength; ++i) {
+			if (i == length)
+				return -1;
+			int difference = word.charAt(i) - prefix.charAt(i);
+			if (difference != 0)
+				return difference;
+		}
+
+		return 0;
+
+	}
+
+	private String[] getWords() {
+		String[] words = new String[mOrdinals.length + mWords.length];
+		for (int i = 0; i < mOrdinals.length; ++i) {
+			words[i] = mDictionary.getWord(mOrdinals[i]);
+		}
+		System.arraycopy(mWords, 0, words, mOrdinals.length, mWords.length);
+		return words;
+	}
+
+	private int binarySearch(int ordinal) {
+
+		int low = 0;
+		int high = mOrdinals.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int value = mOrdinals[middle];
+			if (value < ordinal) {
+				low = middle + 1;
+			} else if (value > ordinal) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+
+		return -(low + 1);
+
+	}
+
+	private void checkResolved() {
+		if (!isResolved())
+			throw new IllegalStateException(
+					"Played words have not been given a dictionary");
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+
+		out.defaultWriteObject();
+
+		WordTrie words = new WordTrie();
+		for (String word : isResolved() ? getWords() : mUnresolvedWords) {
+			words.add(word);
+		}
+		words.write(out);
+
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+
+		in.defaultReadObject();
+
+		final List<String> words = new ArrayList<String>();
+		WordTrie.read(in).visitWords(new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				words.add(word);
+				return true;
+			}
+
+		});
+
+		mOrdinals = NO_ORDINALS;
+		mWords = NO_WORDS;
+		mUnresolvedWords = words.toArray(new String[words.size()]);
+
+	}
+
+}
@@ -0,0 +1,284 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.Context;
+
+import com.andrewpmsmith.movabletype.R;
+
+/**
+ * Provides the single dictionary instance shared by the whole process.
+ *
+ * The dictionary is a MappedDawg: the binary dictionary that the build
+ * compiles from res/raw/wordlist.txt (see custom_rules.xml) is copied to
+ * private storage once, then memory mapped so that the word list lives
+ * outside the Java heap. Once copied, opening it reads only the header. The
+ * operating system pages in the parts of the file that lookups touch and
+ * drops them again under memory pressure, so the dictionary is not split into
+ * parts that are loaded and evicted separately.
+ *
+ * If the file cannot be copied or mapped, for example because there is no
+ * space left, the SQLite backed WordList is used instead, behind a Bloom
+ * filter that rejects most words that are not in the dictionary without
+ * querying the database.
+ *
+ * The mapped dictionary also numbers its words, for the played words of each
+ * game.
+ */
+public final class SharedDictionary {
+
+	private static final String MAPPED_DICTIONARY_FILE = "dictionary.bin";
+
+	// Copied by earlier versions, before the dictionary numbered its words
+	private static final String OBSOLETE_ORDINALS_FILE = "dictionary_ordinals.bin";
+
+	private static Dictionary sDictionary;
+	private static AnagramIndex sAnagramIndex;
+	private static LetterCountFilter sLetterCountFilter;
+
+	/**
+	 * Get the shared dictionary, opening it on the first call. The first call
+	 * does disk I/O, so it should be made from a background thread.
+	 */
+	public static synchronized Dictionary get(Context context) {
+
+		if (sDictionary == null) {
+			sDictionary = load(context.getApplicationContext());
+		}
+
+		return sDictionary;
+
+	}
+
+	/**
+	 * Get the index used to find every word that can be made from a set of
+	 * letters, building it on the first call. The first call may take a few
+	 * hundred milliseconds, so it should be made from a background thread.
+	 */
+	public static synchronized AnagramIndex getAnagramIndex(Context context) {
+
+		if (sAnagramIndex == null) {
+			sAnagramIndex = buildAnagramIndex(context.getApplicationContext());
+		}
+
+		return sAnagramIndex;
+
+	}
+
+	/**
+	 * Get the brute force equivalent of the anagram index, reading it from
+	 * the plain text word list on the first call. The first call should be
+	 * made from a background thread.
+	 */
+	public static synchronized LetterCountFilter getLetterCountFilter(
+			Context context) {
+
+		if (sLetterCountFilter == null) {
+			InputStream is = context.getResources().openRawResource(
+					R.raw.wordlist);
+			try {
+				sLetterCountFilter = LetterCountFilter.read(is);
+			} catch (IOException e) {
+				e.printStackTrace();
+				sLetterCountFilter = LetterCountFilter
+						.create(new ArrayList<String>());
+			}
+		}
+
+		return sLetterCountFilter;
+
+	}
+
+	/**
+	 * Get the ordinals of the words in the shared dictionary, opening it on
+	 * the first call as get(..) does.
+	 *
+	 * @param context
+	 *            the context to open the dictionary with, or null if there is
+	 *            none, such as for a game created without one.
+	 * @return the dictionary's ordinals, or null if there is no context or
+	 *         the dictionary does not number its words, as the SQLite
+	 *         fallback does not. In either case PlayedWordSet stores words as
+	 *         strings.
+	 */
+	public static synchronized WordOrdinals getOrdinals(Context context) {
+
+		if (context == null)
+			return null;
+
+		Dictionary dictionary = get(context);
+		return (dictionary instanceof WordOrdinals) ? (WordOrdinals) dictionary
+				: null;
+
+	}
+
+	private static AnagramIndex buildAnagramIndex(Context context) {
+
+		final AnagramIndex.Builder builder = new AnagramIndex.Builder();
+		Dictionary dictionary = get(context);
+
+		WordVisitor visitor = new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				builder.add(word);
+				return true;
+			}
+
+		};
+
+		if (dictionary instanceof MappedDawg) {
+			((MappedDawg) dictionary).visitWords(visitor);
+		} else {
+			InputStream is = context.getResources().openRawResource(
+					R.raw.wordlist);
+			try {
+				List<String> words = WordListReader.readWords(is);
+				for (String word : words) {
+					builder.add(word);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		return builder.build();
+
+	}
+
+	private static Dictionary load(Context context) {
+
+		try {
+			return mapDictionary(context);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		// Fall back to the SQLite database, ensuring it has been initialised
+		WordList wordList = WordList.getInstance(context);
+		wordList.getReadableDatabase();
+
+		BloomFilter filter = loadBloomFilter(context);
+		return (filter != null) ? new BloomFilteredDictionary(filter, wordList)
+				: wordList;
+
+	}
+
+	/*
+	 * Memory map the private copy of the binary dictionary.
+	 */
+	private static MappedDawg mapDictionary(Context context) throws IOException {
+
+		new File(context.getFilesDir(), OBSOLETE_ORDINALS_FILE).delete();
+
+		File file = updateCopy(context, R.raw.dictionary,
+				MAPPED_DICTIONARY_FILE);
+
+		try {
+			return MappedDawg.map(file);
+		} catch (IOException e) {
+			// The copy may be damaged, so make sure it is replaced next time
+			file.delete();
+			throw e;
+		}
+
+	}
+
+	/*
+	 * Returns the private copy of a raw resource, first copying it if it is
+	 * missing or may be out of date: if its length differs from the
+	 * resource's, or it was made before the app was last installed or updated.
+	 * An update can change the word list without changing the file's length or
+	 * header, so the copy is compared with the modification time of the APK,
+	 * as PackageInfo.lastUpdateTime needs API level 9.
+	 */
+	private static File updateCopy(Context context, int id, String name)
+			throws IOException {
+
+		File file = new File(context.getFilesDir(), name);
+
+		long length;
+		InputStream is = context.getResources().openRawResource(id);
+		try {
+			// The stream reports the full length of the resource
+			length = is.available();
+		} finally {
+			is.close();
+		}
+
+		long installed = new File(context.getApplicationInfo().sourceDir)
+				.lastModified();
+
+		if (file.length() != length || file.lastModified() < installed) {
+			copyResource(context, id, file);
+		}
+
+		return file;
+
+	}
+
+	/*
+	 * Copy a raw resource to a file, writing to a temporary file first so
+	 * that a partial copy is never left in place.
+	 */
+	private static void copyResource(Context context, int id, File file)
+			throws IOException {
+
+		File temp = new File(file.getPath() + ".tmp");
+		InputStream is = context.getResources().openRawResource(id);
+
+		try {
+			OutputStream os = new FileOutputStream(temp);
+			try {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = is.read(buffer)) > 0) {
+					os.write(buffer, 0, read);
+				}
+			} finally {
+				os.close();
+			}
+		} finally {
+			is.close();
+		}
+
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Unable to create " + file);
+		}
+
+	}
+
+	private static BloomFilter loadBloomFilter(Context context) {
+
+		InputStream is = new BufferedInputStream(context.getResources()
+				.openRawResource(R.raw.dictionary_bloom));
+
+		try {
+			return BloomFilter.read(is);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			try {
+				is.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+	}
+
+	// Suppress default constructor for noninstantiability
+	private SharedDictionary() {
+		throw new AssertionError();
+	}
+
+}
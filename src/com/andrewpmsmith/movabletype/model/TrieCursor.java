@@ -0,0 +1,60 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * A position in a trie or word graph that moves one letter at a time, so that
+ * a word being built up letter by letter can be checked without walking from
+ * the root after every change.
+ *
+ * The cursor may move past the end of the trie; it then reports neither a
+ * word nor a prefix until it is moved back. push(..) and pop() take constant
+ * time and only allocate if the word grows longer than any seen before.
+ */
+public interface TrieCursor {
+
+	/**
+	 * Creates cursors over a collection of words.
+	 */
+	public interface Source {
+
+		/**
+		 * @return a new cursor positioned at the empty string.
+		 */
+		public TrieCursor newCursor();
+
+	}
+
+	/**
+	 * Append a letter to the cursor's string.
+	 *
+	 * @return true if the new string is a prefix of some word.
+	 */
+	public boolean push(char c);
+
+	/**
+	 * Remove the last letter from the cursor's string. Does nothing if the
+	 * string is empty.
+	 */
+	public void pop();
+
+	/**
+	 * Return to the empty string.
+	 */
+	public void reset();
+
+	/**
+	 * @return the length of the cursor's string.
+	 */
+	public int getDepth();
+
+	/**
+	 * @return true if the cursor's string is a word.
+	 */
+	public boolean isWord();
+
+	/**
+	 * @return true if the cursor's string is a prefix of some word, including
+	 *         the word itself.
+	 */
+	public boolean isPrefix();
+
+}
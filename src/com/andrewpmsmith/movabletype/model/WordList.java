@@ -1,17 +1,18 @@
 package com.andrewpmsmith.movabletype.model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import com.andrewpmsmith.movabletype.R;
 
@@ -21,17 +22,28 @@ import com.andrewpmsmith.movabletype.R;
  * 
  * The database is initially constructed from a list of words contained in a 
  * text file.
+ * 
+ * A single instance, obtained with getInstance(..), should be shared by the
+ * whole process. It keeps its database connection open and reuses a compiled
+ * statement for lookups.
  *
  * @author Andrew Smith
  */
-public class WordList extends SQLiteOpenHelper {
+public class WordList extends SQLiteOpenHelper implements Dictionary {
+
+	// SQLite's default limit on the number of parameters in a statement
+	private static final int MAX_QUERY_PARAMETERS = 999;
 
 	private static final int DATABASE_VERSION = 1;
 	private static final String DATABASE_NAME = "wordlist";
 	private static final String TABLE_WORDS = "words";
 	private static final String KEY_WORD = "word";
 
+	private static WordList sInstance;
+
 	protected Context mContext;
+	private SQLiteStatement mLookupStatement;
+	private volatile WordListImporter.ProgressListener mImportListener;
 
 	public WordList(Context context) {
 
@@ -40,6 +52,19 @@ public class WordList extends SQLiteOpenHelper {
 
 	}
 
+	/**
+	 * Get the word list shared by the whole process.
+	 */
+	public static synchronized WordList getInstance(Context context) {
+
+		if (sInstance == null) {
+			sInstance = new WordList(context.getApplicationContext());
+		}
+
+		return sInstance;
+
+	}
+
 	@Override
 	public void onCreate(SQLiteDatabase db) {
 
@@ -56,10 +81,17 @@ public class WordList extends SQLiteOpenHelper {
 
 	}
 	
+	@Override
+	public synchronized void close() {
+		releaseLookupStatement();
+		super.close();
+	}
+
 	/*
 	 * Used for testing only
 	 */
-	public void reCreate() {
+	public synchronized void reCreate() {
+		releaseLookupStatement();
 		SQLiteDatabase db = getReadableDatabase();
 		db.execSQL("DROP TABLE IF EXISTS " + TABLE_WORDS);
 		onCreate(db);
@@ -74,76 +106,148 @@ public class WordList extends SQLiteOpenHelper {
 	}
 
 	/*
-	 * Prepare a word for storage in the DB. Reject words less than two letters
-	 * in length. Reject words with non-alphabetical characters (e.g.
-	 * apostrophes/hyphens). Convert words to upper case.
-	 */
-	private String normaliseWord(String word) {
-
-		if (word == null)
-			return null;
-		if (word.length() < 2)
-			return null;
-		word = word.toUpperCase(Locale.getDefault());
-		if (!word.matches("^[A-Z]+$"))
-			return null;
-		return word;
-
-	}
-
-	/*
-	 * Add the word list to the DB. This may take several minutes.
+	 * Add the word list to the DB. The file is read and normalised on
+	 * background threads while this thread inserts the words. If the import
+	 * fails a RuntimeException is thrown, so that the database is not left
+	 * with a partial word list.
 	 */
 	public void addWords(SQLiteDatabase db) {
 
 		InputStream is = mContext.getResources()
 				.openRawResource(R.raw.wordlist);
-		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-
-		db.beginTransaction();
 
-		String line;
+		long totalBytes = 0;
 		try {
-			while ((line = reader.readLine()) != null) {
+			totalBytes = is.available();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 
-				String word = normaliseWord(line);
-				if (word == null)
-					continue;
+		// Duplicate words in the file, or from a previous attempt to populate
+		// the word list, are ignored
+		final SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO "
+				+ TABLE_WORDS + " (" + KEY_WORD + ") VALUES (?)");
 
-				ContentValues values = new ContentValues();
-				values.put(KEY_WORD, word);
-				try {
-					db.insert(TABLE_WORDS, null, values);
-				} catch (SQLiteConstraintException e) {
-					// Duplicate word in file, or from prev attempt to populate
-					// the word list. Consume exception and keep going
-				}
+		// Only a complete word list is committed. If the import fails while
+		// the database is being created, the creation is rolled back too, so
+		// the import is tried again the next time the database is opened
+		db.beginTransaction();
 
-			}
+		try {
+			new WordListImporter().run(is, totalBytes,
+					new WordListImporter.Sink() {
+
+						@Override
+						public void writeBatch(String[] words, int count) {
+							for (int i = 0; i < count; ++i) {
+								insert.bindString(1, words[i]);
+								insert.executeInsert();
+							}
+						}
+
+					}, mImportListener);
+			db.setTransactionSuccessful();
 		} catch (IOException e) {
-			e.printStackTrace();
+			// Fail the database creation rather than leave an empty table
+			throw new RuntimeException("Unable to import the word list", e);
+		} finally {
+			db.endTransaction();
+			insert.close();
 		}
-		db.setTransactionSuccessful();
-		db.endTransaction();
 
 	}
 
-	public boolean wordInDictionary(String word) {
+	/**
+	 * Receive progress reports while the word list database is being
+	 * created. The listener is called on the thread that opened the database.
+	 *
+	 * @param listener
+	 *            the listener, or null to stop receiving reports.
+	 */
+	public void setImportProgressListener(
+			WordListImporter.ProgressListener listener) {
+		mImportListener = listener;
+	}
+
+	@Override
+	public synchronized boolean wordInDictionary(CharSequence word) {
+		return wordInDictionary(word == null ? null : word.toString());
+	}
+
+	public synchronized boolean wordInDictionary(String word) {
 		
-		if (word==null || !word.matches("^[A-Z]+$")) {
+		if (!WordListReader.isUpperCaseWord(word)) {
 			return false;
 		}
-		
+
+		SQLiteStatement statement = getLookupStatement();
+		statement.bindString(1, word);
+		return statement.simpleQueryForLong() > 0;
+
+	}
+
+	/**
+	 * Look up many words with one query per MAX_QUERY_PARAMETERS words,
+	 * rather than one query per word.
+	 */
+	@Override
+	public synchronized Set<String> lookupAll(Collection<String> words) {
+
+		Set<String> found = new HashSet<String>();
+
+		List<String> valid = new ArrayList<String>(words.size());
+		for (String word : words) {
+			if (WordListReader.isUpperCaseWord(word))
+				valid.add(word);
+		}
+
 		SQLiteDatabase db = getReadableDatabase();
 
-		Cursor c = db.rawQuery("SELECT * FROM " + TABLE_WORDS + " WHERE "
-				+ KEY_WORD + "= '" + word + "'", null);
-		boolean ret = (c != null && c.getCount() > 0);
+		for (int start = 0; start < valid.size(); start += MAX_QUERY_PARAMETERS) {
 
-		c.close();
-		db.close();
+			int end = Math.min(valid.size(), start + MAX_QUERY_PARAMETERS);
+			String[] args = valid.subList(start, end).toArray(
+					new String[end - start]);
+
+			StringBuilder query = new StringBuilder("SELECT " + KEY_WORD
+					+ " FROM " + TABLE_WORDS + " WHERE " + KEY_WORD + " IN (");
+			for (int i = 0; i < args.length; ++i) {
+				query.append((i == 0) ? "?" : ",?");
+			}
+			query.append(")");
+
+			Cursor c = db.rawQuery(query.toString(), args);
+			if (c.moveToFirst()) {
+				do {
+					found.add(c.getString(0));
+				} while (c.moveToNext());
+			}
+			c.close();
+		}
+
+		return found;
+
+	}
+
+	private SQLiteStatement getLookupStatement() {
+
+		if (mLookupStatement == null) {
+			SQLiteDatabase db = getReadableDatabase();
+			mLookupStatement = db.compileStatement("SELECT COUNT(*) FROM "
+					+ TABLE_WORDS + " WHERE " + KEY_WORD + " = ?");
+		}
+
+		return mLookupStatement;
+
+	}
+
+	private void releaseLookupStatement() {
+
+		if (mLookupStatement != null) {
+			mLookupStatement.close();
+			mLookupStatement = null;
+		}
 
-		return ret;
 	}
 
 }
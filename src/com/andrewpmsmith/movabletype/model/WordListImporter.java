@@ -0,0 +1,381 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams a word list in the same text format as res/raw/wordlist.txt to a
+ * Sink, such as a database table, using several threads.
+ *
+ * A reader thread splits the input into chunks of lines. A pool of worker
+ * threads normalises each chunk, then sorts it and removes duplicates. The
+ * calling thread passes the finished batches to the sink in whatever order
+ * they complete. The queues between the stages are bounded, so memory use
+ * does not grow with the size of the word list. Duplicates that fall in
+ * different batches are left for the sink to ignore.
+ *
+ * If any stage fails, the others are told to stop, and run(..) waits for
+ * every thread to finish before reporting the first error.
+ */
+public class WordListImporter {
+
+	public static final int DEFAULT_BATCH_SIZE = 2048;
+
+	private static final int QUEUE_BATCHES_PER_WORKER = 2;
+
+	/**
+	 * Receives normalised words from the importer. Batches are always passed
+	 * on the thread that called run(..).
+	 */
+	public interface Sink {
+
+		/**
+		 * @param words
+		 *            sorted, distinct words. Only the first count entries are
+		 *            valid.
+		 */
+		public void writeBatch(String[] words, int count) throws IOException;
+
+	}
+
+	/**
+	 * Reports the progress of an import. Called on the thread that called
+	 * run(..).
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * @param bytesRead
+		 *            the number of bytes of the input written to the sink so
+		 *            far.
+		 * @param totalBytes
+		 *            the expected size of the input, or 0 if unknown.
+		 */
+		public void onProgress(long bytesRead, long totalBytes);
+
+	}
+
+	/*
+	 * A group of lines, and after normalisation the words made from them.
+	 * The end of a stage's output is marked by a batch with a null array.
+	 */
+	private static final class Batch {
+
+		final String[] mWords;
+		int mCount;
+		final long mEndPosition;
+
+		Batch(String[] words, int count, long endPosition) {
+			mWords = words;
+			mCount = count;
+			mEndPosition = endPosition;
+		}
+
+		boolean isEnd() {
+			return mWords == null;
+		}
+
+	}
+
+	private static final Batch END = new Batch(null, 0, 0);
+
+	private final int mWorkerCount;
+	private final int mBatchSize;
+
+	private volatile IOException mReadError;
+	private volatile Throwable mThreadError;
+	private volatile boolean mCancelled;
+
+	public WordListImporter() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+	}
+
+	public WordListImporter(int workerCount, int batchSize) {
+		mWorkerCount = Math.max(1, workerCount);
+		mBatchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Import every word from the stream into the sink. The stream is closed
+	 * before returning.
+	 *
+	 * @param totalBytes
+	 *            the size of the input used for progress reports, or 0 if
+	 *            unknown.
+	 * @param listener
+	 *            receives progress after each batch. May be null.
+	 * @throws IOException
+	 *             if the input could not be read, or the sink failed. Words
+	 *             read before the error may already have been written.
+	 *             Unchecked exceptions thrown by the sink, or by the import
+	 *             threads, are rethrown after the import has stopped.
+	 */
+	public void run(InputStream is, long totalBytes, Sink sink,
+			ProgressListener listener) throws IOException {
+
+		final int queueSize = mWorkerCount * QUEUE_BATCHES_PER_WORKER;
+		final BlockingQueue<Batch> lines = new ArrayBlockingQueue<Batch>(
+				queueSize);
+		final BlockingQueue<Batch> words = new ArrayBlockingQueue<Batch>(
+				queueSize);
+		final CountingInputStream input = new CountingInputStream(is);
+
+		mReadError = null;
+		mThreadError = null;
+		mCancelled = false;
+
+		Thread reader = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				readLines(input, lines);
+			}
+
+		}, "WordListImporter-reader");
+
+		Thread[] workers = new Thread[mWorkerCount];
+		for (int i = 0; i < mWorkerCount; ++i) {
+			workers[i] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					normaliseBatches(lines, words);
+				}
+
+			}, "WordListImporter-worker-" + i);
+		}
+
+		reader.start();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+
+		Throwable sinkError = null;
+		long bytesWritten = 0;
+		int finishedWorkers = 0;
+
+		try {
+			while (finishedWorkers < mWorkerCount) {
+
+				Batch batch = words.take();
+				if (batch.isEnd()) {
+					++finishedWorkers;
+					continue;
+				}
+
+				// Keep draining the queue after a failure so that the other
+				// threads can finish
+				if (sinkError != null)
+					continue;
+
+				try {
+					sink.writeBatch(batch.mWords, batch.mCount);
+				} catch (IOException e) {
+					sinkError = e;
+					mCancelled = true;
+					continue;
+				} catch (RuntimeException e) {
+					sinkError = e;
+					mCancelled = true;
+					continue;
+				}
+
+				bytesWritten = Math.max(bytesWritten, batch.mEndPosition);
+				if (listener != null)
+					listener.onProgress(bytesWritten, totalBytes);
+			}
+
+			reader.join();
+			for (Thread worker : workers) {
+				worker.join();
+			}
+
+		} catch (InterruptedException e) {
+			reader.interrupt();
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+			Thread.currentThread().interrupt();
+			throw new IOException("Word list import interrupted");
+		}
+
+		if (sinkError != null)
+			rethrow(sinkError);
+		if (mThreadError != null)
+			rethrow(mThreadError);
+		if (mReadError != null)
+			throw mReadError;
+
+	}
+
+	private static void rethrow(Throwable t) throws IOException {
+
+		if (t instanceof IOException)
+			throw (IOException) t;
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+
+		IOException e = new IOException("Word list import failed");
+		e.initCause(t);
+		throw e;
+
+	}
+
+	/*
+	 * Split the input into batches of lines. When the input is finished, or
+	 * the import is cancelled, tell each worker to stop. If the thread is
+	 * interrupted the whole import has been abandoned, so just exit.
+	 */
+	private void readLines(CountingInputStream input, BlockingQueue<Batch> lines) {
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+
+		try {
+			String[] chunk = new String[mBatchSize];
+			int count = 0;
+			String line;
+
+			try {
+				while (!mCancelled && (line = reader.readLine()) != null) {
+					chunk[count++] = line;
+					if (count == mBatchSize) {
+						lines.put(new Batch(chunk, count, input.getPosition()));
+						chunk = new String[mBatchSize];
+						count = 0;
+					}
+				}
+				if (count > 0)
+					lines.put(new Batch(chunk, count, input.getPosition()));
+			} catch (IOException e) {
+				mReadError = e;
+			} catch (Throwable t) {
+				mThreadError = t;
+			}
+
+			// Always tell the workers to stop, or they would wait forever
+			for (int i = 0; i < mWorkerCount; ++i) {
+				lines.put(END);
+			}
+
+		} catch (InterruptedException e) {
+			// The import was abandoned
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+	}
+
+	/*
+	 * Normalise batches of lines until the reader says there are no more. If
+	 * normalising fails, the error is recorded and the import cancelled, but
+	 * the remaining lines are still drained so that the reader can finish,
+	 * and the end of this worker's output is always posted so that the
+	 * calling thread does not wait for it forever.
+	 */
+	private void normaliseBatches(BlockingQueue<Batch> lines,
+			BlockingQueue<Batch> words) {
+
+		try {
+			Batch batch;
+			while (!(batch = lines.take()).isEnd()) {
+
+				if (mThreadError != null)
+					continue;
+
+				try {
+					batch = normalise(batch);
+				} catch (Throwable t) {
+					mThreadError = t;
+					mCancelled = true;
+					continue;
+				}
+
+				words.put(batch);
+			}
+			words.put(END);
+		} catch (InterruptedException e) {
+			// The import was abandoned
+		}
+
+	}
+
+	/*
+	 * Normalise the lines in place, then sort and remove duplicates.
+	 */
+	private static Batch normalise(Batch batch) {
+
+		String[] words = batch.mWords;
+		int count = 0;
+		for (int i = 0; i < batch.mCount; ++i) {
+			String word = WordListReader.normaliseWord(words[i]);
+			if (word != null)
+				words[count++] = word;
+		}
+
+		Arrays.sort(words, 0, count);
+
+		int unique = 0;
+		for (int i = 0; i < count; ++i) {
+			if (unique == 0 || !words[i].equals(words[unique - 1]))
+				words[unique++] = words[i];
+		}
+
+		batch.mCount = unique;
+		return batch;
+
+	}
+
+	/*
+	 * Keeps track of how far through the input the reader has got.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private volatile long mPosition;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		long getPosition() {
+			return mPosition;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				++mPosition;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int count)
+				throws IOException {
+			int read = super.read(buffer, offset, count);
+			if (read > 0)
+				mPosition += read;
+			return read;
+		}
+
+		@Override
+		public long skip(long count) throws IOException {
+			long skipped = super.skip(count);
+			mPosition += skipped;
+			return skipped;
+		}
+
+	}
+
+}
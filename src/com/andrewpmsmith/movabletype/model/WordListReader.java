@@ -0,0 +1,101 @@
+package com.andrewpmsmith.movabletype.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the raw word list text file, which contains one word per line, and
+ * prepares the words for use in a dictionary.
+ */
+public final class WordListReader {
+
+	private static final int MIN_WORD_LENGTH = 2;
+
+	/**
+	 * Prepare a word for storage in a dictionary. Reject words less than two
+	 * letters in length. Reject words with non-alphabetical characters (e.g.
+	 * apostrophes/hyphens). Convert words to upper case.
+	 *
+	 * @return the normalised word, or null if the word was rejected.
+	 */
+	public static String normaliseWord(String word) {
+
+		if (word == null)
+			return null;
+		if (word.length() < MIN_WORD_LENGTH)
+			return null;
+		word = word.toUpperCase(Locale.US);
+		if (!isUpperCaseWord(word))
+			return null;
+		return word;
+
+	}
+
+	/**
+	 * Check that a word is made up only of the letters A to Z. Equivalent to
+	 * matching the regex ^[A-Z]+$ without compiling a pattern for each call.
+	 */
+	public static boolean isUpperCaseWord(CharSequence word) {
+
+		if (word == null || word.length() == 0)
+			return false;
+
+		for (int i = 0; i < word.length(); ++i) {
+			char c = word.charAt(i);
+			if (c < 'A' || c > 'Z')
+				return false;
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Read every line of a word list, normalise each word, and return the
+	 * accepted words sorted with duplicates removed. The stream is closed
+	 * before returning.
+	 */
+	public static List<String> readWords(InputStream is) throws IOException {
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+		List<String> words = new ArrayList<String>();
+
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String word = normaliseWord(line);
+				if (word != null)
+					words.add(word);
+			}
+		} finally {
+			reader.close();
+		}
+
+		Collections.sort(words);
+
+		// Remove duplicates in place now that equal words are adjacent
+		int unique = 0;
+		for (int i = 0; i < words.size(); ++i) {
+			String word = words.get(i);
+			if (unique == 0 || !word.equals(words.get(unique - 1))) {
+				words.set(unique++, word);
+			}
+		}
+		words.subList(unique, words.size()).clear();
+
+		return words;
+
+	}
+
+	// Suppress default constructor for noninstantiability
+	private WordListReader() {
+		throw new AssertionError();
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * Maps each word in a dictionary to a dense ordinal between 0 and
+ * getWordCount() - 1, so that played words, caches and tables can be stored as
+ * ints rather than strings.
+ *
+ * Ordinals are the alphabetical rank of the word, so the words that start
+ * with a given prefix always have consecutive ordinals, from
+ * getPrefixStart(..) up to but not including getPrefixEnd(..).
+ */
+public interface WordOrdinals {
+
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * @return the ordinal of the word, or NOT_FOUND if it is not in the
+	 *         dictionary.
+	 */
+	public int getOrdinal(CharSequence word);
+
+	/**
+	 * @return the word with the given ordinal.
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no word with the ordinal.
+	 */
+	public String getWord(int ordinal);
+
+	/**
+	 * @return the ordinal of the first word that starts with the prefix, or
+	 *         NOT_FOUND if there is none. Every word starts with the empty
+	 *         string.
+	 */
+	public int getPrefixStart(CharSequence prefix);
+
+	/**
+	 * @return one more than the ordinal of the last word that starts with the
+	 *         prefix, or NOT_FOUND if there is none.
+	 */
+	public int getPrefixEnd(CharSequence prefix);
+
+	public int getWordCount();
+
+}
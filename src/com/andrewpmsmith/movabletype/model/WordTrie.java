@@ -1,105 +1,214 @@
 package com.andrewpmsmith.movabletype.model;
 
-import android.annotation.SuppressLint;
-
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Manages a Trie data structure used to store words and do fast lookups and 
+ * Manages a Trie data structure used to store words and do fast lookups and
  * prefix checking.
  *
+ * Nodes are stored in parallel int arrays rather than as objects. Each node
+ * has a mask with one bit per letter that has a child, and the index of its
+ * first child. A node's children are stored contiguously in letter order, so
+ * the child for a letter is found by adding the number of bits set below it
+ * in the mask to the first child, as in Dawg. Adding a child moves the
+ * node's children to a block one larger, and the block they leave is kept
+ * for the next node that needs one of its size. Lookups allocate nothing,
+ * and adding a word only allocates when the arrays need to grow.
+ *
+ * Tries are serialized in a compact binary format: a version header followed
+ * by the words in alphabetical order, each front coded as the length of the
+ * prefix it shares with the previous word, then the rest of its letters, then
+ * its index. Java serialization of a WordTrie, and so of saved games, uses
+ * the same format.
+ *
  * @author Andrew Smith
  */
-public class WordTrie implements Serializable {
+public class WordTrie implements Serializable, TrieCursor.Source {
 
+	// Unchanged since the first release, so that tries saved in the
+	// original format can still be read; see readObject(..)
 	private static final long serialVersionUID = 1L;
-	private static final String UPPERCASE_A_TO_Z_REGEX = "^[A-Z]+$";
-	
-	public static final int INVALID_WORD_ERROR = -1;
 
-	private final Node mRoot;
-	private int mWordIndex = 0;
+	static final int MAGIC = 0x4d545754; // "MTWT"
+	static final int FORMAT_VERSION = 1;
 
-	@SuppressLint("UseSparseArrays")
-	// Use HashMap because SparseIntArray is not serializable
-	private class Node implements Serializable {
+	public static final int INVALID_WORD_ERROR = -1;
 
-		private static final long serialVersionUID = 1L;
+	private static final int FIRST_CHAR = 'A';
+	private static final int ALPHABET_SIZE = 26;
+	private static final int ROOT = 0;
+	private static final int NO_NODE = -1;
+	private static final int NO_WORD = -1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Written by writeObject(..) in the compact format
+	private transient int[] mMasks;
+	private transient int[] mFirstChildren;
+	private transient int[] mIndexes;
+	// The number of array entries used, including the free blocks, and the
+	// number of nodes in the trie
+	private transient int mSize;
+	private transient int mNodeCount;
+	private transient int mWordCount;
+	private transient int mWordIndex;
+	// The first free block of each size, with the next in mFirstChildren
+	private transient int[] mFreeBlocks;
 
-		private static final int FIRST_CHAR = 'A';
+	public WordTrie() {
+		init();
+	}
 
-		public int mIndex = -1;
-		private HashMap<Integer, Node> mLetters;
+	private void init() {
+		mMasks = new int[INITIAL_CAPACITY];
+		mFirstChildren = new int[INITIAL_CAPACITY];
+		mIndexes = new int[INITIAL_CAPACITY];
+		mSize = 0;
+		mNodeCount = 1;
+		mWordCount = 0;
+		mWordIndex = 0;
+		mFreeBlocks = new int[ALPHABET_SIZE + 1];
+		Arrays.fill(mFreeBlocks, NO_NODE);
+		clearNode(allocate(1));
+	}
 
-		private int convertIndex(char c) {
-			return c - FIRST_CHAR;
+	/**
+	 * @return the trie, or null if the data is not a valid trie.
+	 */
+	public static WordTrie deserialize(byte[] stream) {
+		try {
+			return read(new ByteArrayInputStream(stream));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
 		}
+	}
 
-		public Node get(char c) {
-
-			if (mLetters == null)
-				return null;
-
-			int index = convertIndex(c);
-			return (index >= 0) ? mLetters.get(index) : null;
+	public byte[] serialize() {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try {
+			write(bos);
+		} catch (IOException e) {
+			// Not thrown by ByteArrayOutputStream
+			throw new AssertionError(e);
 		}
+		return bos.toByteArray();
+	}
 
-		public int add(char c, Node n) {
+	/**
+	 * Read a trie previously saved with write(..) in one pass. The stream is
+	 * not closed.
+	 *
+	 * @throws IOException
+	 *             if the stream cannot be read or is not in a supported
+	 *             format.
+	 */
+	public static WordTrie read(InputStream is) throws IOException {
+		WordTrie trie = new WordTrie();
+		trie.readWords(new DataInputStream(is));
+		return trie;
+	}
 
-			if (mLetters == null)
-				mLetters = new HashMap<Integer, Node>();
+	/**
+	 * Write this trie in the compact binary format. The stream is not closed.
+	 */
+	public void write(OutputStream os) throws IOException {
+		DataOutputStream out = new DataOutputStream(os);
+		writeWords(out);
+		out.flush();
+	}
 
-			int index = convertIndex(c);
-			if (index >= 0) {
-				mLetters.put(index, n);
-				return index;
-			} else {
-				return INVALID_WORD_ERROR;
-			}
-		}
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		writeWords(out);
+	}
 
-	} // class Node
+	/*
+	 * Read the compact format, or the fields of the original format in which
+	 * the nodes were Node objects, as found in games saved by earlier
+	 * versions.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+
+		ObjectInputStream.GetField fields = in.readFields();
+		init();
+
+		if (fields.getObjectStreamClass().getField("mRoot") != null) {
+			Node root = (Node) fields.get("mRoot", null);
+			if (root == null)
+				throw new IOException("Corrupt word trie");
+			addOriginalWords(root, new StringBuilder());
+			mWordIndex = fields.get("mWordIndex", 0);
+		} else {
+			readWords(in);
+		}
 
-	public WordTrie() {
-		mRoot = new Node();
 	}
 
-	public static WordTrie deserialize(byte[] stream) {
-		return (WordTrie) Serializer.deserialize(stream);
-	}
+	/*
+	 * Add the words below a node of the original format, keeping their
+	 * indexes.
+	 */
+	private void addOriginalWords(Node node, StringBuilder prefix)
+			throws IOException {
+
+		if (node.mIndex >= 0) {
+			String word = prefix.toString();
+			if (add(word) == INVALID_WORD_ERROR)
+				throw new IOException("Corrupt word trie");
+			mIndexes[find(word)] = node.mIndex;
+		}
+
+		if (node.mLetters == null)
+			return;
+
+		int length = prefix.length();
+		for (Map.Entry<Integer, Node> entry : node.mLetters.entrySet()) {
+			prefix.append((char) (FIRST_CHAR + entry.getKey()));
+			addOriginalWords(entry.getValue(), prefix);
+			prefix.setLength(length);
+		}
 
-	public byte[] serialize() {
-		return Serializer.serialize(this);
 	}
 
 	public int add(String word) {
 
-		if (word == null) {
-			return INVALID_WORD_ERROR;
-		}
-		
-		if (!word.matches(UPPERCASE_A_TO_Z_REGEX))
+		if (!WordListReader.isUpperCaseWord(word))
 			return INVALID_WORD_ERROR;
 
-		Node currentNode = mRoot;
+		int node = ROOT;
 
 		for (int i = 0; i < word.length(); ++i) {
 
-			char c = word.charAt(i);
-			Node next = currentNode.get(c);
+			int letter = word.charAt(i) - FIRST_CHAR;
+			int next = child(node, letter);
 
-			if (next == null) {
-				next = new Node();
-				currentNode.add(c, next);
+			if (next == NO_NODE) {
+				next = addChild(node, letter);
 			}
 
-			currentNode = next;
+			node = next;
 		}
 
-		currentNode.mIndex = mWordIndex++;
+		if (mIndexes[node] == NO_WORD)
+			++mWordCount;
+		mIndexes[node] = mWordIndex++;
 
-		return currentNode.mIndex;
+		return mIndexes[node];
 	}
 
 	public boolean contains(String word) {
@@ -108,41 +217,338 @@ public class WordTrie implements Serializable {
 			return false;
 		}
 
-		Node currentNode = mRoot;
+		int node = find(word);
+		return node != NO_NODE && mIndexes[node] != NO_WORD;
 
-		for (int i = 0; i < word.length(); ++i) {
+	}
+
+	public boolean containsPrefix(String prefix) {
+
+		if (prefix == null) {
+			return false;
+		}
+
+		return find(prefix) != NO_NODE;
+
+	}
+
+	/**
+	 * Create a cursor over the words in this trie. Adding words can move the
+	 * nodes a cursor has reached, so reset the cursor after adding words.
+	 */
+	@Override
+	public TrieCursor newCursor() {
 
-			currentNode = currentNode.get(word.charAt(i));
+		return new NodeCursor(ROOT) {
 
-			if (currentNode == null) {
-				return false;
+			@Override
+			protected int child(int node, char c) {
+				int letter = c - FIRST_CHAR;
+				return (letter >= 0 && letter < ALPHABET_SIZE) ? WordTrie.this
+						.child(node, letter) : NO_NODE;
 			}
 
-		}
+			@Override
+			protected boolean isTerminal(int node) {
+				return mIndexes[node] != NO_WORD;
+			}
 
-		return currentNode.mIndex != -1;
+		};
 
 	}
 
-	public boolean containsPrefix(String prefix) {
+	public int getNodeCount() {
+		return mNodeCount;
+	}
 
-		if (prefix == null) {
+	/**
+	 * Create an immutable, minimised copy of this trie in which words that
+	 * end the same way share nodes. The copy answers contains and
+	 * containsPrefix in the same way as this trie, and can be used as a
+	 * Dictionary. The trie itself is not changed.
+	 */
+	public Dawg freeze() {
+
+		final Dawg.Builder builder = new Dawg.Builder();
+
+		// Siblings are in letter order, so words are visited in the sorted
+		// order the builder needs
+		visitWords(new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				builder.add(word);
+				return true;
+			}
+
+		});
+
+		return builder.build();
+
+	}
+
+	/**
+	 * Pass every word in the trie to the visitor, in alphabetical order.
+	 *
+	 * @return false if the visitor stopped the enumeration early.
+	 */
+	public boolean visitWords(WordVisitor visitor) {
+		return visitWords(ROOT, new StringBuilder(), visitor);
+	}
+
+	private boolean visitWords(int node, StringBuilder prefix,
+			WordVisitor visitor) {
+
+		if (mIndexes[node] != NO_WORD && !visitor.visitWord(prefix.toString()))
 			return false;
+
+		int mask = mMasks[node];
+		int child = mFirstChildren[node];
+		int length = prefix.length();
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			if ((mask & (1 << i)) != 0) {
+				prefix.append((char) (FIRST_CHAR + i));
+				boolean more = visitWords(child++, prefix, visitor);
+				prefix.setLength(length);
+				if (!more)
+					return false;
+			}
 		}
 
-		Node currentNode = mRoot;
+		return true;
+
+	}
+
+	private void writeWords(DataOutput out) throws IOException {
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		writeVarInt(out, mWordIndex);
+		writeVarInt(out, mWordCount);
+
+		// No word is longer than the number of nodes
+		writeWords(out, ROOT, new byte[mNodeCount], 0, new int[] { 0 });
 
-		for (int i = 0; i < prefix.length(); ++i) {
+	}
+
+	/*
+	 * Write the words below the node in alphabetical order. path holds the
+	 * letters leading to the node, and shared[0] the length of the prefix
+	 * the path still shares with the last word written.
+	 */
+	private void writeWords(DataOutput out, int node, byte[] path, int depth,
+			int[] shared) throws IOException {
+
+		if (mIndexes[node] != NO_WORD) {
+			writeVarInt(out, shared[0]);
+			writeVarInt(out, depth - shared[0]);
+			out.write(path, shared[0], depth - shared[0]);
+			writeVarInt(out, mIndexes[node]);
+			shared[0] = depth;
+		}
+
+		int mask = mMasks[node];
+		int child = mFirstChildren[node];
+		for (int i = 0; i < ALPHABET_SIZE; ++i) {
+			if ((mask & (1 << i)) != 0) {
+				path[depth] = (byte) (FIRST_CHAR + i);
+				writeWords(out, child++, path, depth + 1, shared);
+				// Later words only share the path up to this node
+				shared[0] = Math.min(shared[0], depth);
+			}
+		}
 
-			currentNode = currentNode.get(prefix.charAt(i));
+	}
 
-			if (currentNode == null) {
-				return false;
+	/*
+	 * Add the words from the stream to this empty trie. Each word starts
+	 * from the node at the end of the prefix it shares with the previous
+	 * word, so every letter is visited once.
+	 */
+	private void readWords(DataInput in) throws IOException {
+
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a word trie");
+		int version = in.readInt();
+		if (version != FORMAT_VERSION)
+			throw new IOException("Unsupported word trie version " + version);
+
+		int nextIndex = readVarInt(in);
+		int wordCount = readVarInt(in);
+
+		int[] path = new int[INITIAL_CAPACITY];
+		path[0] = ROOT;
+		int depth = 0;
+
+		for (int w = 0; w < wordCount; ++w) {
+
+			int prefix = readVarInt(in);
+			int suffix = readVarInt(in);
+			if (prefix > depth || suffix < 0)
+				throw new IOException("Corrupt word trie");
+
+			depth = prefix;
+			for (int i = 0; i < suffix; ++i) {
+				int letter = in.readByte() - FIRST_CHAR;
+				if (letter < 0 || letter >= ALPHABET_SIZE)
+					throw new IOException("Corrupt word trie");
+				int node = path[depth];
+				int next = child(node, letter);
+				if (next == NO_NODE)
+					next = addChild(node, letter);
+				if (++depth == path.length)
+					path = grow(path, path.length * 2);
+				path[depth] = next;
 			}
 
+			int index = readVarInt(in);
+			if (index < 0 || index >= nextIndex)
+				throw new IOException("Corrupt word trie");
+			if (mIndexes[path[depth]] == NO_WORD)
+				++mWordCount;
+			mIndexes[path[depth]] = index;
+
 		}
 
-		return true;
+		mWordIndex = nextIndex;
+
+	}
+
+	private static void writeVarInt(DataOutput out, int value)
+			throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Corrupt word trie");
+	}
+
+	/*
+	 * Returns the node reached by following the characters of the string from
+	 * the root, or NO_NODE.
+	 */
+	private int find(String s) {
+
+		int node = ROOT;
+
+		for (int i = 0; i < s.length() && node != NO_NODE; ++i) {
+			int letter = s.charAt(i) - FIRST_CHAR;
+			node = (letter >= 0 && letter < ALPHABET_SIZE) ? child(node, letter)
+					: NO_NODE;
+		}
+
+		return node;
+
+	}
+
+	private int child(int node, int letter) {
+
+		int mask = mMasks[node];
+		int bit = 1 << letter;
+		if ((mask & bit) == 0)
+			return NO_NODE;
+
+		return mFirstChildren[node] + Integer.bitCount(mask & (bit - 1));
+
+	}
+
+	/*
+	 * Add a child for a letter the node does not yet have. The node's
+	 * children are copied to a new block with the new child in its place in
+	 * letter order, so that they stay contiguous, and their old block is
+	 * freed. Their children do not move.
+	 */
+	private int addChild(int node, int letter) {
+
+		int mask = mMasks[node];
+		int bit = 1 << letter;
+		int count = Integer.bitCount(mask);
+		int position = Integer.bitCount(mask & (bit - 1));
+
+		int first = allocate(count + 1);
+		if (count > 0) {
+			int old = mFirstChildren[node];
+			copyNodes(old, first, position);
+			copyNodes(old + position, first + position + 1, count - position);
+			mFirstChildren[old] = mFreeBlocks[count];
+			mFreeBlocks[count] = old;
+		}
+
+		int child = first + position;
+		clearNode(child);
+		mFirstChildren[node] = first;
+		mMasks[node] = mask | bit;
+		++mNodeCount;
+
+		return child;
+
+	}
+
+	/*
+	 * Returns the first entry of a block of count nodes, reusing a free
+	 * block if there is one.
+	 */
+	private int allocate(int count) {
+
+		int free = mFreeBlocks[count];
+		if (free != NO_NODE) {
+			mFreeBlocks[count] = mFirstChildren[free];
+			return free;
+		}
+
+		if (mSize + count > mMasks.length) {
+			int capacity = Math.max(mMasks.length * 2, mSize + count);
+			mMasks = grow(mMasks, capacity);
+			mFirstChildren = grow(mFirstChildren, capacity);
+			mIndexes = grow(mIndexes, capacity);
+		}
+
+		int first = mSize;
+		mSize += count;
+		return first;
+
+	}
+
+	private void copyNodes(int from, int to, int count) {
+		System.arraycopy(mMasks, from, mMasks, to, count);
+		System.arraycopy(mFirstChildren, from, mFirstChildren, to, count);
+		System.arraycopy(mIndexes, from, mIndexes, to, count);
+	}
+
+	private void clearNode(int node) {
+		mMasks[node] = 0;
+		mFirstChildren[node] = NO_NODE;
+		mIndexes[node] = NO_WORD;
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/*
+	 * A node of the original format, in which each node was an object with
+	 * its children in a map keyed by letter. Only used to read tries saved
+	 * in that format.
+	 */
+	private static final class Node implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private int mIndex;
+		private HashMap<Integer, Node> mLetters;
 
 	}
 
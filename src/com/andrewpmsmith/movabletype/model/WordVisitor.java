@@ -0,0 +1,14 @@
+package com.andrewpmsmith.movabletype.model;
+
+/**
+ * Receives words, one at a time, from a search or enumeration of a word
+ * collection.
+ */
+public interface WordVisitor {
+
+	/**
+	 * @return true to continue receiving words, or false to stop the search.
+	 */
+	public boolean visitWord(String word);
+
+}
@@ -53,6 +53,8 @@ public class Board extends RenderSurface implements WidgetClickListener,
 	private Tile[] mTiles;
 	private List<Tile> mWord = new LinkedList<Tile>();
 	private List<Tile> mLastPlayedWord;
+	// Reused to pass the word's tile indexes to the model
+	private int[] mWordIndexes;
 	private Tile mPlaceHolderTile;
 	private int mPlaceHolderIndex = PLACEHOLDER_UNUSED;
 
@@ -120,9 +122,10 @@ public class Board extends RenderSurface implements WidgetClickListener,
 
 		setBackgroundColor(mBackgroundColor);
 
-		mTiles = new Tile[GameModel.GRID_ITEMS];
+		mTiles = new Tile[mGameModel.getGridSize()];
+		mWordIndexes = new int[mGameModel.getGridSize()];
 
-		for (int i = 0; i < GameModel.GRID_ITEMS; ++i) {
+		for (int i = 0; i < mTiles.length; ++i) {
 
 			int tileColor = getColor(i);
 
@@ -208,10 +211,15 @@ public class Board extends RenderSurface implements WidgetClickListener,
 
 	private void layoutBoard() {
 
-		int tileWidth = getWidth() / GameModel.GRID_COLUMNS;
+		final int columns = mGameModel.getGridWidth();
+		final int rows = mGameModel.getGridHeight();
+
+		// Leave at least a row's height above the grid for the word
+		int tileWidth = Math.min(getWidth() / columns, getHeight()
+				/ (rows + 1));
 		int tileHeight = tileWidth;
 
-		mGridTop = getHeight() - tileHeight * GameModel.GRID_ROWS;
+		mGridTop = getHeight() - tileHeight * rows;
 
 		mWordTop = (int) ((mGridTop / 2.0) - tileHeight / 2.0);
 		mAddToWordThreshold = (int) ((mGridTop / 2.0) + tileHeight * 0.25);
@@ -221,10 +229,10 @@ public class Board extends RenderSurface implements WidgetClickListener,
 		mTileWidthInWord = (int) (tileWidth * TILE_IN_WORD_SCALE_FACTOR);
 		Tile.widthInWord = mTileWidthInWord;
 
-		for (int i = 0; i < GameModel.GRID_ITEMS; ++i) {
+		for (int i = 0; i < mTiles.length; ++i) {
 
-			int x = tileWidth * (i % GameModel.GRID_COLUMNS);
-			int y = mGridTop + tileWidth * (i / GameModel.GRID_COLUMNS);
+			int x = tileWidth * (i % columns);
+			int y = mGridTop + tileWidth * (i / columns);
 			mTiles[i].applyLayout(x, y, tileWidth, tileHeight);
 
 		}
@@ -255,12 +263,15 @@ public class Board extends RenderSurface implements WidgetClickListener,
 		case UNPLAYED:
 			/* falls through */
 		default:
-			return (tileIndex % 2 == 0) ? mEvenTileColor : mOddTileColor;
+			// A checkerboard, whether the rows have an odd or even length
+			int columns = mGameModel.getGridWidth();
+			return ((tileIndex / columns + tileIndex % columns) % 2 == 0) ? mEvenTileColor
+					: mOddTileColor;
 		}
 	}
 
 	private void updateGrid() {
-		for (int i = 0; i < GameModel.GRID_ITEMS; ++i) {
+		for (int i = 0; i < mTiles.length; ++i) {
 			int tileColor = getColor(i);
 			mTiles[i].setColor(tileColor);
 		}
@@ -428,7 +439,7 @@ public class Board extends RenderSurface implements WidgetClickListener,
 		int offset = (int) (getWidth() / 2 - (Tile.widthInWord / 2.0)
 				* mWord.size());
 
-		List<Integer> letters = new LinkedList<Integer>();
+		int length = 0;
 		for (int i = 0; i < mWord.size(); ++i) {
 
 			Tile t = mWord.get(i);
@@ -438,11 +449,11 @@ public class Board extends RenderSurface implements WidgetClickListener,
 			animateToPosition(t, x, y, Tile.widthInWord);
 
 			if (t.getIndex() >= 0) {
-				letters.add(t.getIndex());
+				mWordIndexes[length++] = t.getIndex();
 			}
 		}
 
-		mGameModel.setWord(letters);
+		mGameModel.setWord(mWordIndexes, length);
 
 		updateScore();
 
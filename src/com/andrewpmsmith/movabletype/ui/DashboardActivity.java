@@ -12,7 +12,6 @@ import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
@@ -31,7 +30,9 @@ import android.widget.TextView;
 
 import com.andrewpmsmith.movabletype.R;
 import com.andrewpmsmith.movabletype.model.GameDataBase;
+import com.andrewpmsmith.movabletype.model.SharedDictionary;
 import com.andrewpmsmith.movabletype.model.WordList;
+import com.andrewpmsmith.movabletype.model.WordListImporter;
 
 /**
  * The activity that displays the main menu, allowing the creation of a new
@@ -54,7 +55,7 @@ public class DashboardActivity extends Activity implements OnItemClickListener,
 
 	private GameDataBase mSavedGameDB;
 
-	private class LoadDBTask extends AsyncTask<Void, Void, Boolean> {
+	private class LoadDBTask extends AsyncTask<Void, Integer, Boolean> {
 
 		private final Context mContext;
 		private ProgressDialog progressDialog;
@@ -67,22 +68,57 @@ public class DashboardActivity extends Activity implements OnItemClickListener,
 		@Override
 		protected void onPreExecute() {
 			mListView.setEnabled(false);
-			progressDialog = ProgressDialog.show(mContext,
-					getString(R.string.loading),
-					getString(R.string.loading_message));
+			progressDialog = new ProgressDialog(mContext);
+			progressDialog.setTitle(getString(R.string.loading));
+			progressDialog.setMessage(getString(R.string.loading_message));
+			// Opening the dictionary normally takes too little time to
+			// measure, so the bar only shows a percentage once the word list
+			// database is being built and reports how far it has got
+			progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+			progressDialog.setIndeterminate(true);
+			progressDialog.setMax(100);
+			progressDialog.setCancelable(false);
+			progressDialog.show();
 		}
 
 		@Override
 		protected Boolean doInBackground(Void... params) {
 
-			// Ensure the database has been initialised
-			WordList db = new WordList(mContext);
-			SQLiteDatabase temp = db.getReadableDatabase();
-			temp.close();
+			// Report progress if the word list database has to be built
+			WordList wordList = WordList.getInstance(mContext);
+			wordList.setImportProgressListener(new WordListImporter.ProgressListener() {
+
+				@Override
+				public void onProgress(long bytesRead, long totalBytes) {
+					if (totalBytes > 0)
+						publishProgress((int) Math.min(100, bytesRead * 100
+								/ totalBytes));
+				}
+
+			});
+
+			// Ensure the dictionary has been opened. Normally this maps the
+			// compiled dictionary, copying it to private storage the first
+			// time; the word list database is only built if that fails. The
+			// ordinals that games record played words with are loaded here
+			// too, so that the first game does not load them on the UI thread
+			try {
+				SharedDictionary.get(mContext);
+				SharedDictionary.getOrdinals(mContext);
+			} finally {
+				wordList.setImportProgressListener(null);
+			}
 
 			return true;
 		}
 
+		@Override
+		protected void onProgressUpdate(Integer... progress) {
+			if (progressDialog.isIndeterminate())
+				progressDialog.setIndeterminate(false);
+			progressDialog.setProgress(progress[0]);
+		}
+
 		@Override
 		protected void onPostExecute(Boolean result) {
 			if (result) {
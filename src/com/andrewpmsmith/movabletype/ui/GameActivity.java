@@ -17,6 +17,9 @@ import com.andrewpmsmith.movabletype.model.GameModel;
 public class GameActivity extends Activity {
 
 	public final static String EXTRA_GAME_ID = "gameId";
+	// The size of the board for a new game; a standard board if not given
+	public final static String EXTRA_GRID_COLUMNS = "gridColumns";
+	public final static String EXTRA_GRID_ROWS = "gridRows";
 
 	Board mBoard;
 	GameModel mGameModel;
@@ -35,7 +38,10 @@ public class GameActivity extends Activity {
 			GameDataBase gdb = new GameDataBase(this);
 			mGameModel = gdb.getGame(mSavedGameId);
 		} else {
-			mGameModel = new GameModel(this);
+			int columns = intent.getIntExtra(EXTRA_GRID_COLUMNS,
+					GameModel.GRID_COLUMNS);
+			int rows = intent.getIntExtra(EXTRA_GRID_ROWS, GameModel.GRID_ROWS);
+			mGameModel = new GameModel(this, columns, rows);
 		}
 
 		mBoard = new Board(this, mGameModel);
@@ -0,0 +1,101 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.List;
+
+import com.andrewpmsmith.movabletype.model.AnagramIndex;
+import com.andrewpmsmith.movabletype.model.WordVisitor;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class AnagramIndexTest extends TestCase {
+
+	private static final String[] WORDS = {
+		"ACT", "CAT", "TAC", "CATS", "TACT", "AT", "TA", "DOG", "GOD", "ZOO"
+	};
+
+	private AnagramIndex createSampleIndex() {
+		AnagramIndex.Builder builder = new AnagramIndex.Builder();
+		for (String word : WORDS) {
+			Assert.assertTrue(builder.add(word));
+		}
+		Assert.assertFalse(builder.add("lower"));
+		Assert.assertFalse(builder.add(null));
+		return builder.build();
+	}
+
+	private int[] countLetters(String letters) {
+		int[] counts = new int[26];
+		for (int i = 0; i < letters.length(); ++i) {
+			++counts[letters.charAt(i) - 'A'];
+		}
+		return counts;
+	}
+
+	/*
+	 * Returns true if word can be made from the letters, each letter used
+	 * no more often than it appears
+	 */
+	private boolean canMake(String word, String letters) {
+		int[] counts = countLetters(letters);
+		for (int i = 0; i < word.length(); ++i) {
+			if (--counts[word.charAt(i) - 'A'] < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Test that exactly the words that fit in the letters are found
+	 */
+	public void test_findWords() {
+
+		AnagramIndex index = createSampleIndex();
+		Assert.assertEquals(WORDS.length, index.getWordCount());
+
+		final String[] letterSets = {
+			"", "A", "AT", "CAT", "TACS", "TTAC", "DOGZOO", "ZO",
+			"ABCDEFGHIJKLMNOPQRSTUVWXY"
+		};
+
+		for (String letters : letterSets) {
+
+			List<String> found = index.findWords(countLetters(letters));
+
+			for (String word : WORDS) {
+				Assert.assertEquals(letters + " " + word,
+						canMake(word, letters), found.contains(word));
+			}
+
+			Assert.assertTrue(found.size() <= WORDS.length);
+		}
+
+	}
+
+	/*
+	 * Test that the search stops when the visitor asks it to, and that the
+	 * caller's counts are not modified
+	 */
+	public void test_stop() {
+
+		AnagramIndex index = createSampleIndex();
+		int[] counts = countLetters("CATSDOG");
+		final int[] visited = { 0 };
+
+		boolean completed = index.findWords(counts, new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				return ++visited[0] < 2;
+			}
+
+		});
+
+		Assert.assertFalse(completed);
+		Assert.assertEquals(2, visited[0]);
+		Assert.assertTrue(java.util.Arrays.equals(countLetters("CATSDOG"),
+				counts));
+
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.andrewpmsmith.movabletype.model.AbstractDictionary;
+import com.andrewpmsmith.movabletype.model.BloomFilter;
+import com.andrewpmsmith.movabletype.model.BloomFilteredDictionary;
+import com.andrewpmsmith.movabletype.model.Dictionary;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class BloomFilterTest extends TestCase {
+
+	private static final int WORD_COUNT = 10000;
+	private static final double FALSE_POSITIVE_RATE = 0.01;
+
+	/*
+	 * Returns a unique string of CAPITALS for each n
+	 */
+	private String word(int n) {
+		StringBuilder sb = new StringBuilder("W");
+		do {
+			sb.append((char) ('A' + n % 26));
+			n /= 26;
+		} while (n > 0);
+		return sb.toString();
+	}
+
+	private BloomFilter createSampleFilter() {
+		BloomFilter filter = BloomFilter.create(WORD_COUNT,
+				FALSE_POSITIVE_RATE);
+		for (int i = 0; i < WORD_COUNT; ++i) {
+			filter.add(word(i));
+		}
+		return filter;
+	}
+
+	/*
+	 * Test that added words are always found and that the false positive
+	 * rate is close to the one requested
+	 */
+	public void test_falsePositiveRate() {
+
+		BloomFilter filter = createSampleFilter();
+
+		for (int i = 0; i < WORD_COUNT; ++i) {
+			Assert.assertTrue(filter.mightContain(word(i)));
+		}
+
+		int falsePositives = 0;
+		final int trials = 100000;
+		for (int i = WORD_COUNT; i < WORD_COUNT + trials; ++i) {
+			if (filter.mightContain(word(i)))
+				++falsePositives;
+		}
+
+		Assert.assertTrue("false positive rate " + falsePositives / (double) trials,
+				falsePositives < trials * FALSE_POSITIVE_RATE * 2);
+
+		Assert.assertFalse(filter.mightContain(null));
+
+	}
+
+	/*
+	 * Test that a filter can be written and read back
+	 */
+	public void test_serialization() throws IOException {
+
+		BloomFilter filter = createSampleFilter();
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		filter.write(bos);
+		BloomFilter n = BloomFilter.read(new ByteArrayInputStream(bos
+				.toByteArray()));
+
+		Assert.assertEquals(filter.getBitCount(), n.getBitCount());
+		Assert.assertEquals(filter.getHashCount(), n.getHashCount());
+
+		Random r = new Random(1);
+		for (int i = 0; i < 1000; ++i) {
+			String w = word(r.nextInt(WORD_COUNT * 10));
+			Assert.assertEquals(filter.mightContain(w), n.mightContain(w));
+		}
+
+	}
+
+	/*
+	 * Test that the filtered dictionary gives the same answers as the
+	 * dictionary it wraps, and counts rejections and false positives
+	 */
+	public void test_filteredDictionary() {
+
+		final Set<String> words = new HashSet<String>();
+		for (int i = 0; i < WORD_COUNT; ++i) {
+			words.add(word(i));
+		}
+
+		final int[] lookups = { 0 };
+		Dictionary dictionary = new AbstractDictionary() {
+
+			@Override
+			public boolean wordInDictionary(CharSequence word) {
+				++lookups[0];
+				return words.contains(word.toString());
+			}
+
+		};
+
+		BloomFilteredDictionary filtered = new BloomFilteredDictionary(
+				createSampleFilter(), dictionary);
+
+		final int queries = 2 * WORD_COUNT;
+		for (int i = 0; i < queries; ++i) {
+			Assert.assertEquals(i < WORD_COUNT,
+					filtered.wordInDictionary(word(i)));
+		}
+
+		Assert.assertEquals(queries, filtered.getQueryCount());
+		Assert.assertEquals(queries - filtered.getRejectedCount(), lookups[0]);
+		Assert.assertEquals(lookups[0] - WORD_COUNT,
+				filtered.getFalsePositiveCount());
+		Assert.assertTrue(filtered.getRejectedCount() > WORD_COUNT * 0.9);
+
+		filtered.resetCounts();
+		Assert.assertEquals(0, filtered.getQueryCount());
+
+		// Batch lookups only pass candidates on to the dictionary
+		List<String> batch = new ArrayList<String>();
+		for (int i = 0; i < queries; ++i) {
+			batch.add(word(i));
+		}
+		lookups[0] = 0;
+		Set<String> found = filtered.lookupAll(batch);
+		Assert.assertEquals(words, found);
+		Assert.assertEquals(queries, filtered.getQueryCount());
+		Assert.assertEquals(queries - filtered.getRejectedCount(), lookups[0]);
+		Assert.assertEquals(lookups[0] - WORD_COUNT,
+				filtered.getFalsePositiveCount());
+
+		// Duplicate words are each counted
+		filtered.resetCounts();
+		batch.addAll(batch);
+		lookups[0] = 0;
+		Assert.assertEquals(words, filtered.lookupAll(batch));
+		Assert.assertEquals(2 * queries, filtered.getQueryCount());
+		Assert.assertEquals(lookups[0] - 2 * WORD_COUNT,
+				filtered.getFalsePositiveCount());
+
+	}
+
+}
@@ -0,0 +1,184 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.CaptureEngine;
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class CaptureEngineTest extends TestCase {
+
+	private static final LetterState[] STATES = LetterState.values();
+
+	/*
+	 * The tile by tile capture scan that GameModel used before the engine,
+	 * for a board of any width. Returns the change in player 1's score minus
+	 * the change in player 2's.
+	 */
+	static int referenceCaptures(LetterState[] grid, int columns) {
+
+		int scoreChange = 0;
+
+		for (int tile = 0; tile < grid.length; ++tile) {
+
+			LetterState currentTileState = grid[tile];
+
+			final int left = tile - 1;
+			final int right = tile + 1;
+			final int above = tile - columns;
+			final int below = tile + columns;
+
+			LetterState[] surrounding = new LetterState[4];
+
+			surrounding[0] = (left >= 0 && left % columns < tile % columns) ? grid[left]
+					: null;
+			surrounding[1] = (tile % columns < right % columns) ? grid[right]
+					: null;
+			surrounding[2] = (above >= 0) ? grid[above] : null;
+			surrounding[3] = (below < grid.length) ? grid[below] : null;
+
+			boolean player1Surrounded = true;
+			boolean player2Surrounded = true;
+
+			for (int i = 0; i < 4; ++i) {
+				player1Surrounded &= (surrounding[i] == null
+						|| surrounding[i] == LetterState.PLAYER1_OWNED || surrounding[i] == LetterState.PLAYER1_SURROUNDED);
+				player2Surrounded &= (surrounding[i] == null
+						|| surrounding[i] == LetterState.PLAYER2_OWNED || surrounding[i] == LetterState.PLAYER2_SURROUNDED);
+			}
+
+			int oldOwner = owner(grid[tile]);
+			if (player1Surrounded) {
+				grid[tile] = LetterState.PLAYER1_SURROUNDED;
+			} else if (currentTileState == LetterState.PLAYER1_SURROUNDED) {
+				grid[tile] = LetterState.PLAYER1_OWNED;
+			} else if (player2Surrounded) {
+				grid[tile] = LetterState.PLAYER2_SURROUNDED;
+			} else if (currentTileState == LetterState.PLAYER2_SURROUNDED) {
+				grid[tile] = LetterState.PLAYER2_OWNED;
+			}
+			scoreChange += owner(grid[tile]) - oldOwner;
+		}
+
+		return scoreChange;
+
+	}
+
+	static int owner(LetterState state) {
+		switch (state) {
+		case PLAYER1_SURROUNDED:
+		case PLAYER1_OWNED:
+			return 1;
+		case PLAYER2_SURROUNDED:
+		case PLAYER2_OWNED:
+			return -1;
+		default:
+			return 0;
+		}
+	}
+
+	private static void set(long[] mask, int tile) {
+		mask[tile / 64] |= 1L << tile;
+	}
+
+	private static boolean get(long[] mask, int tile) {
+		return (mask[tile / 64] & (1L << tile)) != 0;
+	}
+
+	private static int count(long[] mask) {
+		int count = 0;
+		for (long word : mask) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	private static LetterState[] randomGrid(Random r, int tiles) {
+		// Mostly owned tiles, so that captures are common
+		LetterState[] grid = new LetterState[tiles];
+		for (int i = 0; i < tiles; ++i) {
+			grid[i] = (r.nextInt(4) == 0) ? STATES[r.nextInt(STATES.length)]
+					: (r.nextBoolean() ? LetterState.PLAYER1_OWNED
+							: LetterState.PLAYER2_OWNED);
+		}
+		return grid;
+	}
+
+	/*
+	 * Check the engine against the reference scan on random boards of
+	 * several sizes, including boards of more than 64 tiles
+	 */
+	public void test_randomBoards() {
+
+		final int[][] sizes = { { 5, 5 }, { 4, 4 }, { 1, 6 }, { 7, 1 },
+				{ 3, 9 }, { 8, 8 }, { 9, 8 }, { 13, 11 }, { 64, 3 } };
+
+		Random r = new Random(16);
+
+		for (int[] size : sizes) {
+
+			int columns = size[0];
+			int tiles = columns * size[1];
+			CaptureEngine engine = new CaptureEngine(columns, size[1]);
+			Assert.assertEquals(tiles, engine.getTileCount());
+
+			for (int run = 0; run < 2000; ++run) {
+
+				LetterState[] grid = randomGrid(r, tiles);
+
+				long[][] masks = new long[4][engine.getMaskLength()];
+				for (int i = 0; i < tiles; ++i) {
+					switch (grid[i]) {
+					case PLAYER1_SURROUNDED:
+						set(masks[2], i);
+						// fall through
+					case PLAYER1_OWNED:
+						set(masks[0], i);
+						break;
+					case PLAYER2_SURROUNDED:
+						set(masks[3], i);
+						// fall through
+					case PLAYER2_OWNED:
+						set(masks[1], i);
+						break;
+					default:
+						break;
+					}
+				}
+				int before = count(masks[0]) - count(masks[1]);
+
+				int scoreChange = referenceCaptures(grid, columns);
+				engine.makeCaptures(masks[0], masks[1], masks[2], masks[3]);
+
+				for (int i = 0; i < tiles; ++i) {
+					LetterState expected = grid[i];
+					String where = columns + "x" + size[1] + " tile " + i;
+					Assert.assertEquals(where, owner(expected) == 1,
+							get(masks[0], i));
+					Assert.assertEquals(where, owner(expected) == -1,
+							get(masks[1], i));
+					Assert.assertEquals(where,
+							expected == LetterState.PLAYER1_SURROUNDED,
+							get(masks[2], i));
+					Assert.assertEquals(where,
+							expected == LetterState.PLAYER2_SURROUNDED,
+							get(masks[3], i));
+				}
+				Assert.assertEquals(scoreChange, count(masks[0])
+						- count(masks[1]) - before);
+				// Nothing is set beyond the end of the board
+				for (int i = tiles; i < 64 * masks[0].length; ++i) {
+					for (long[] mask : masks) {
+						Assert.assertFalse(get(mask, i));
+					}
+				}
+
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,161 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.CaptureTracker;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class CaptureTrackerTest extends TestCase {
+
+	private static final LetterState[] STATES = LetterState.values();
+
+	private static void set(long[] mask, int tile) {
+		mask[tile / 64] |= 1L << tile;
+	}
+
+	private static boolean get(long[] mask, int tile) {
+		return (mask[tile / 64] & (1L << tile)) != 0;
+	}
+
+	private static long[][] toMasks(LetterState[] grid) {
+		long[][] masks = new long[4][(grid.length + 63) / 64];
+		for (int i = 0; i < grid.length; ++i) {
+			switch (grid[i]) {
+			case PLAYER1_SURROUNDED:
+				set(masks[2], i);
+				// fall through
+			case PLAYER1_OWNED:
+				set(masks[0], i);
+				break;
+			case PLAYER2_SURROUNDED:
+				set(masks[3], i);
+				// fall through
+			case PLAYER2_OWNED:
+				set(masks[1], i);
+				break;
+			default:
+				break;
+			}
+		}
+		return masks;
+	}
+
+	private static void checkMasks(String where, LetterState[] grid,
+			long[][] masks, CaptureTracker tracker) {
+
+		int player1Count = 0;
+		int player2Count = 0;
+
+		for (int i = 0; i < grid.length; ++i) {
+			LetterState expected = grid[i];
+			int owner = CaptureEngineTest.owner(expected);
+			Assert.assertEquals(where + i, owner == 1, get(masks[0], i));
+			Assert.assertEquals(where + i, owner == -1, get(masks[1], i));
+			Assert.assertEquals(where + i,
+					expected == LetterState.PLAYER1_SURROUNDED,
+					get(masks[2], i));
+			Assert.assertEquals(where + i,
+					expected == LetterState.PLAYER2_SURROUNDED,
+					get(masks[3], i));
+			if (owner == 1)
+				++player1Count;
+			if (owner == -1)
+				++player2Count;
+		}
+
+		Assert.assertEquals(where, player1Count,
+				tracker.getOwnedCount(CaptureTracker.PLAYER1));
+		Assert.assertEquals(where, player2Count,
+				tracker.getOwnedCount(CaptureTracker.PLAYER2));
+
+	}
+
+	/*
+	 * Play random games, checking the board against the full scan after
+	 * every turn. Tiles that the scan leaves unsettled must be picked up on
+	 * the following turn.
+	 */
+	public void test_randomGames() {
+
+		final int[][] sizes = { { 5, 5 }, { 4, 4 }, { 1, 5 }, { 6, 1 },
+				{ 3, 7 }, { 9, 8 }, { 15, 15 } };
+
+		Random r = new Random(18);
+
+		for (int[] size : sizes) {
+
+			int columns = size[0];
+			int tiles = columns * size[1];
+
+			for (int game = 0; game < 300; ++game) {
+
+				LetterState[] grid = new LetterState[tiles];
+				for (int i = 0; i < tiles; ++i) {
+					grid[i] = LetterState.UNPLAYED;
+				}
+				long[][] masks = toMasks(grid);
+				CaptureTracker tracker = new CaptureTracker(columns, size[1],
+						masks[0], masks[1], masks[2], masks[3]);
+
+				for (int turn = 0; turn < 3 * tiles; ++turn) {
+
+					boolean player1 = (turn % 2) == 0;
+					int length = 1 + r.nextInt(Math.min(tiles, 6));
+					for (int i = 0; i < length; ++i) {
+						int tile = r.nextInt(tiles);
+						if (grid[tile] != LetterState.PLAYER1_SURROUNDED
+								&& grid[tile] != LetterState.PLAYER2_SURROUNDED) {
+							grid[tile] = player1 ? LetterState.PLAYER1_OWNED
+									: LetterState.PLAYER2_OWNED;
+							tracker.claim(tile,
+									player1 ? CaptureTracker.PLAYER1
+											: CaptureTracker.PLAYER2);
+						}
+					}
+
+					CaptureEngineTest.referenceCaptures(grid, columns);
+					tracker.makeCaptures();
+
+					checkMasks(columns + "x" + size[1] + " turn " + turn
+							+ " tile ", grid, masks, tracker);
+
+				}
+			}
+		}
+
+	}
+
+	/*
+	 * A new tracker checks every tile, so boards in any state match the full
+	 * scan
+	 */
+	public void test_randomBoards() {
+
+		Random r = new Random(19);
+
+		for (int run = 0; run < 2000; ++run) {
+
+			int columns = 1 + r.nextInt(10);
+			int rows = 1 + r.nextInt(10);
+			LetterState[] grid = new LetterState[columns * rows];
+			for (int i = 0; i < grid.length; ++i) {
+				grid[i] = STATES[r.nextInt(STATES.length)];
+			}
+
+			long[][] masks = toMasks(grid);
+			CaptureTracker tracker = new CaptureTracker(columns, rows,
+					masks[0], masks[1], masks[2], masks[3]);
+
+			CaptureEngineTest.referenceCaptures(grid, columns);
+			tracker.makeCaptures();
+
+			checkMasks(columns + "x" + rows + " tile ", grid, masks, tracker);
+
+		}
+
+	}
+
+}
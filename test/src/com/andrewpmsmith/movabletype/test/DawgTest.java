@@ -0,0 +1,219 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.WordOrdinals;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class DawgTest extends TestCase {
+
+	private static final String[] WORDS = {
+		"CAT", "CATS", "DOG", "DOGS", "DOT", "DOTS", "ZOO"
+	};
+
+	private Dawg createSampleDawg() {
+		Dawg.Builder builder = new Dawg.Builder();
+		for (String word : WORDS) {
+			Assert.assertTrue(builder.add(word));
+		}
+		return builder.build();
+	}
+
+	/*
+	 * Test lookups of words, non-words and invalid input
+	 */
+	public void test_functional() {
+
+		Dawg dawg = createSampleDawg();
+
+		Assert.assertEquals(WORDS.length, dawg.getWordCount());
+
+		for (String word : WORDS) {
+			Assert.assertTrue(dawg.wordInDictionary(word));
+		}
+
+		// Prefixes and extensions of words are not words
+		Assert.assertFalse(dawg.wordInDictionary("CA"));
+		Assert.assertFalse(dawg.wordInDictionary("DO"));
+		Assert.assertFalse(dawg.wordInDictionary("CATSS"));
+		Assert.assertFalse(dawg.wordInDictionary("ZOOS"));
+
+		// Invalid input
+		Assert.assertFalse(dawg.wordInDictionary(null));
+		Assert.assertFalse(dawg.wordInDictionary(""));
+		Assert.assertFalse(dawg.wordInDictionary("cat"));
+		Assert.assertFalse(dawg.wordInDictionary("CAT'S"));
+		Assert.assertFalse(dawg.wordInDictionary("; DROP TABLE words;"));
+
+	}
+
+	/*
+	 * Test that words map to their alphabetical rank and back, and that
+	 * prefixes map to the range of ordinals of the words that start with them
+	 */
+	public void test_ordinals() {
+
+		Dawg dawg = createSampleDawg();
+
+		for (int i = 0; i < WORDS.length; ++i) {
+			Assert.assertEquals(i, dawg.getOrdinal(WORDS[i]));
+			Assert.assertEquals(WORDS[i], dawg.getWord(i));
+		}
+
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, dawg.getOrdinal("CA"));
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, dawg.getOrdinal("CATSS"));
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, dawg.getOrdinal(""));
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, dawg.getOrdinal("cat"));
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, dawg.getOrdinal(null));
+
+		Assert.assertEquals(0, dawg.getPrefixStart(""));
+		Assert.assertEquals(WORDS.length, dawg.getPrefixEnd(""));
+		Assert.assertEquals(2, dawg.getPrefixStart("DO"));
+		Assert.assertEquals(6, dawg.getPrefixEnd("DO"));
+		Assert.assertEquals(4, dawg.getPrefixStart("DOT"));
+		Assert.assertEquals(6, dawg.getPrefixEnd("DOT"));
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, dawg.getPrefixStart("E"));
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, dawg.getPrefixEnd("E"));
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, dawg.getPrefixStart(null));
+
+		try {
+			dawg.getWord(WORDS.length);
+			Assert.fail("A missing ordinal was accepted");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+
+		Dawg empty = new Dawg.Builder().build();
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, empty.getOrdinal("CAT"));
+		Assert.assertEquals(WordOrdinals.NOT_FOUND, empty.getPrefixStart(""));
+
+	}
+
+	/*
+	 * Test ordinals and prefix ranges against a sorted list of random words
+	 */
+	public void test_randomOrdinals() {
+
+		Random r = new Random(5);
+		TreeSet<String> set = new TreeSet<String>();
+		while (set.size() < 5000) {
+			int length = 1 + r.nextInt(7);
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < length; ++i) {
+				sb.append((char) ('A' + r.nextInt(6)));
+			}
+			set.add(sb.toString());
+		}
+		List<String> words = new ArrayList<String>(set);
+
+		Dawg.Builder builder = new Dawg.Builder();
+		for (String word : words) {
+			builder.add(word);
+		}
+		Dawg dawg = builder.build();
+
+		for (int i = 0; i < words.size(); ++i) {
+			Assert.assertEquals(i, dawg.getOrdinal(words.get(i)));
+			Assert.assertEquals(words.get(i), dawg.getWord(i));
+		}
+
+		for (int i = 0; i < 1000; ++i) {
+			String prefix = words.get(r.nextInt(words.size()));
+			prefix = prefix.substring(0, r.nextInt(prefix.length() + 1));
+
+			int start = 0;
+			while (!words.get(start).startsWith(prefix)) {
+				++start;
+			}
+			int end = start;
+			while (end < words.size() && words.get(end).startsWith(prefix)) {
+				++end;
+			}
+
+			Assert.assertEquals(prefix, start, dawg.getPrefixStart(prefix));
+			Assert.assertEquals(prefix, end, dawg.getPrefixEnd(prefix));
+		}
+
+	}
+
+	/*
+	 * Test that shared suffixes are merged into the same nodes
+	 */
+	public void test_minimisation() {
+
+		Dawg dawg = createSampleDawg();
+
+		// root, C, CA, D, DO, Z, ZO, shared "S"/"T" states and the final
+		// state: far fewer than the 15 nodes of the equivalent trie
+		Assert.assertTrue(dawg.getNodeCount() < 15);
+
+	}
+
+	/*
+	 * Test the builder's handling of out of order, duplicate and invalid words
+	 */
+	public void test_builder() {
+
+		Dawg.Builder builder = new Dawg.Builder();
+
+		Assert.assertTrue(builder.add("BAT"));
+		Assert.assertFalse(builder.add("BAT"));
+		Assert.assertFalse(builder.add(null));
+		Assert.assertFalse(builder.add("bat"));
+
+		try {
+			builder.add("ANT");
+			Assert.fail("Out of order word was accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		Dawg dawg = builder.build();
+		Assert.assertTrue(dawg.wordInDictionary("BAT"));
+		Assert.assertFalse(dawg.wordInDictionary("ANT"));
+		Assert.assertEquals(1, dawg.getWordCount());
+
+	}
+
+	/*
+	 * Test that a Dawg can be written and read back in the binary format
+	 */
+	public void test_serialization() throws IOException {
+
+		Dawg dawg = createSampleDawg();
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		dawg.write(bos);
+
+		Dawg n = Dawg.read(new ByteArrayInputStream(bos.toByteArray()));
+
+		Assert.assertEquals(dawg.getWordCount(), n.getWordCount());
+		Assert.assertEquals(dawg.getNodeCount(), n.getNodeCount());
+		for (String word : WORDS) {
+			Assert.assertTrue(n.wordInDictionary(word));
+		}
+		Assert.assertFalse(n.wordInDictionary("CA"));
+		for (int i = 0; i < WORDS.length; ++i) {
+			Assert.assertEquals(i, n.getOrdinal(WORDS[i]));
+		}
+
+		// Corrupt data is rejected
+		try {
+			Dawg.read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }));
+			Assert.fail("Invalid data was accepted");
+		} catch (IOException e) {
+			// expected
+		}
+
+	}
+
+}
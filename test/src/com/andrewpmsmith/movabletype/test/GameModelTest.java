@@ -1,8 +1,11 @@
 package com.andrewpmsmith.movabletype.test;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
+import android.os.Debug;
 import android.test.AndroidTestCase;
 
 import com.andrewpmsmith.movabletype.model.GameModel;
@@ -10,11 +13,83 @@ import com.andrewpmsmith.movabletype.model.GameModel.GameResult;
 import com.andrewpmsmith.movabletype.model.GameModel.GameState;
 import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
 import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+import com.andrewpmsmith.movabletype.model.SharedDictionary;
 
 import junit.framework.Assert;
 
 public class GameModelTest extends AndroidTestCase {
-	
+
+	/*
+	 * A game saved by the first release: player 2 has passed, MY and ME have
+	 * been played, and TH is the current word
+	 */
+	private static final String ORIGINAL_FORMAT_GAME =
+			"aced00057372002d636f6d2e616e64726577706d736d6974682e6d6f7661626c" +
+			"65747970652e6d6f64656c2e47616d654d6f64656c0000000000000001020008" +
+			"5a000a6d48617350617373656449000e6d506c6179657231506f696e74734900" +
+			"0e6d506c6179657232506f696e74734c000b6d47616d65526573756c7474003a" +
+			"4c636f6d2f616e64726577706d736d6974682f6d6f7661626c65747970652f6d" +
+			"6f64656c2f47616d654d6f64656c2447616d65526573756c743b4c000a6d4761" +
+			"6d6553746174657400394c636f6d2f616e64726577706d736d6974682f6d6f76" +
+			"61626c65747970652f6d6f64656c2f47616d654d6f64656c2447616d65537461" +
+			"74653b5b00056d477269647400375b4c636f6d2f616e64726577706d736d6974" +
+			"682f6d6f7661626c65747970652f6d6f64656c2f47616d654d6f64656c244c65" +
+			"747465723b4c000c6d506c61796564576f72647374002e4c636f6d2f616e6472" +
+			"6577706d736d6974682f6d6f7661626c65747970652f6d6f64656c2f576f7264" +
+			"547269653b4c00056d576f72647400104c6a6176612f7574696c2f4c6973743b" +
+			"7870010000000200000002707e720037636f6d2e616e64726577706d736d6974" +
+			"682e6d6f7661626c65747970652e6d6f64656c2e47616d654d6f64656c244761" +
+			"6d65537461746500000000000000001200007872000e6a6176612e6c616e672e" +
+			"456e756d0000000000000000120000787074000c504c41594552315f5455524e" +
+			"757200375b4c636f6d2e616e64726577706d736d6974682e6d6f7661626c6574" +
+			"7970652e6d6f64656c2e47616d654d6f64656c244c65747465723b7014a46a2d" +
+			"6a563e02000078700000001973720034636f6d2e616e64726577706d736d6974" +
+			"682e6d6f7661626c65747970652e6d6f64656c2e47616d654d6f64656c244c65" +
+			"7474657200000000000000010200034300076d4c65747465724c000c6d4c6574" +
+			"746572537461746574003b4c636f6d2f616e64726577706d736d6974682f6d6f" +
+			"7661626c65747970652f6d6f64656c2f47616d654d6f64656c244c6574746572" +
+			"53746174653b4c000674686973243074002f4c636f6d2f616e64726577706d73" +
+			"6d6974682f6d6f7661626c65747970652f6d6f64656c2f47616d654d6f64656c" +
+			"3b787000417e720039636f6d2e616e64726577706d736d6974682e6d6f766162" +
+			"6c65747970652e6d6f64656c2e47616d654d6f64656c244c6574746572537461" +
+			"746500000000000000001200007871007e0008740012504c41594552315f5355" +
+			"52524f554e44454471007e00067371007e000d00427e71007e0011740008554e" +
+			"504c4159454471007e00067371007e000d004371007e001571007e0006737100" +
+			"7e000d004471007e001571007e00067371007e000d00457e71007e001174000d" +
+			"504c41594552325f4f574e454471007e00067371007e000d004671007e001571" +
+			"007e00067371007e000d004771007e001571007e00067371007e000d00487100" +
+			"7e001571007e00067371007e000d004971007e001571007e00067371007e000d" +
+			"004a71007e001571007e00067371007e000d004b71007e001571007e00067371" +
+			"007e000d004c71007e001571007e00067371007e000d004d7e71007e00117400" +
+			"12504c41594552325f535552524f554e44454471007e00067371007e000d004e" +
+			"71007e001571007e00067371007e000d004f71007e001571007e00067371007e" +
+			"000d005071007e001571007e00067371007e000d005171007e001571007e0006" +
+			"7371007e000d005271007e001571007e00067371007e000d005371007e001571" +
+			"007e00067371007e000d005471007e001571007e00067371007e000d00557100" +
+			"7e001571007e00067371007e000d005671007e001571007e00067371007e000d" +
+			"005771007e001571007e00067371007e000d005871007e001571007e00067371" +
+			"007e000d00597e71007e001174000d504c41594552315f4f574e454471007e00" +
+			"067372002c636f6d2e616e64726577706d736d6974682e6d6f7661626c657479" +
+			"70652e6d6f64656c2e576f726454726965000000000000000102000249000a6d" +
+			"576f7264496e6465784c00056d526f6f747400334c636f6d2f616e6472657770" +
+			"6d736d6974682f6d6f7661626c65747970652f6d6f64656c2f576f7264547269" +
+			"65244e6f64653b78700000000273720031636f6d2e616e64726577706d736d69" +
+			"74682e6d6f7661626c65747970652e6d6f64656c2e576f726454726965244e6f" +
+			"646500000000000000010200034900066d496e6465784c00086d4c6574746572" +
+			"737400134c6a6176612f7574696c2f486173684d61703b4c0006746869732430" +
+			"71007e00047870ffffffff737200116a6176612e7574696c2e486173684d6170" +
+			"0507dac1c31660d103000246000a6c6f6164466163746f724900097468726573" +
+			"686f6c6478703f4000000000000c77080000001000000001737200116a617661" +
+			"2e6c616e672e496e746567657212e2a0a4f781873802000149000576616c7565" +
+			"787200106a6176612e6c616e672e4e756d62657286ac951d0b94e08b02000078" +
+			"700000000c7371007e0037ffffffff7371007e003a3f4000000000000c770800" +
+			"000010000000027371007e003c000000047371007e0037000000017071007e00" +
+			"367371007e003c000000187371007e0037000000007071007e00367871007e00" +
+			"367871007e0036737200146a6176612e7574696c2e4c696e6b65644c6973740c" +
+			"29535d4a60882203000078707704000000027371007e003c000000137371007e" +
+			"003c0000000778";
+
 	private List<Integer> generateIndexListFromWord(String word, char[] grid) {
 		
 		if (word==null) return null;
@@ -204,6 +279,206 @@ public class GameModelTest extends AndroidTestCase {
 		Assert.assertEquals("player 2 score", 3, points2);
 	}
 	
+	/*
+	 * Test that the state of the current word is kept up to date as tiles
+	 * are added and removed
+	 */
+	public void test_wordStatus() {
+
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+
+		GameModel gm = createSampleModel(testGrid);
+
+		gm.setWord(generateIndexListFromWord("THE", testGrid));
+		Assert.assertTrue(gm.isWordInDictionary());
+		Assert.assertFalse(gm.isWordPlayed());
+		Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+
+		// Build up THEM one tile at a time
+		gm.setWord(generateIndexListFromWord("T", testGrid));
+		Assert.assertFalse(gm.isWordPlayed());
+		Assert.assertTrue(gm.isWordPrefixOfPlayedWord());
+		Assert.assertTrue(gm.canWordBeExtended());
+
+		gm.setWord(generateIndexListFromWord("TH", testGrid));
+		Assert.assertTrue(gm.isWordPrefixOfPlayedWord());
+		Assert.assertFalse(gm.isWordInDictionary());
+
+		gm.setWord(generateIndexListFromWord("THE", testGrid));
+		Assert.assertTrue(gm.isWordPlayed());
+		Assert.assertTrue(gm.isWordInDictionary());
+
+		gm.setWord(generateIndexListFromWord("THEM", testGrid));
+		Assert.assertFalse(gm.isWordPlayed());
+		Assert.assertFalse(gm.isWordPrefixOfPlayedWord());
+		Assert.assertTrue(gm.isWordInDictionary());
+
+		// Replace the last letters
+		gm.setWord(generateIndexListFromWord("TQX", testGrid));
+		Assert.assertFalse(gm.isWordPrefixOfPlayedWord());
+		Assert.assertFalse(gm.canWordBeExtended());
+		Assert.assertFalse(gm.isWordInDictionary());
+
+		gm.setWord(null);
+		Assert.assertTrue(gm.isWordPrefixOfPlayedWord());
+		Assert.assertFalse(gm.isWordPlayed());
+
+	}
+
+	/*
+	 * Test that a word given as an array gives the same results as the same
+	 * word given as a list, and that the word sequence follows the word
+	 */
+	public void test_wordArray() {
+
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+
+		GameModel gm = createSampleModel(testGrid);
+		CharSequence word = gm.getWordSequence();
+		Assert.assertEquals(0, word.length());
+
+		int[] tiles = { 19, 7, 4, 12, -1 };
+		gm.setWord(tiles, 4);
+		Assert.assertEquals("THEM", gm.getWord());
+		Assert.assertEquals("THEM", word.toString());
+		Assert.assertEquals('H', word.charAt(1));
+		Assert.assertEquals("HE", word.subSequence(1, 3).toString());
+		Assert.assertEquals(4, gm.getPoints(GameModel.PLAYER1));
+
+		// The model keeps its own copy of the tiles
+		tiles[3] = 0;
+		Assert.assertEquals("THEM", gm.getWord());
+
+		gm.setWord(tiles, 3);
+		Assert.assertEquals("THE", word.toString());
+		Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+		Assert.assertEquals(0, word.length());
+
+		gm.setWord(generateIndexListFromWord("THE", testGrid));
+		Assert.assertEquals(TurnResult.WORD_ALREADY_PLAYED, gm.playTurn());
+
+	}
+
+	/*
+	 * Test that scoring and checking a word being built allocates nothing
+	 */
+	public void test_allocations() {
+
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+		final int[] tiles = { 19, 7, 4, 12 };
+		final int runs = 1000;
+
+		GameModel gm = createSampleModel(testGrid);
+		gm.setWord(tiles, 3);
+		Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+
+		// Create the model's buffers and load the played words
+		gm.setWord(tiles, tiles.length);
+		gm.getPoints(GameModel.PLAYER1);
+		gm.isWordPlayed();
+
+		Debug.startAllocCounting();
+		try {
+			Debug.resetThreadAllocCount();
+			for (int i = 0; i < runs; ++i) {
+				gm.setWord(tiles, 1 + i % tiles.length);
+				gm.getPoints(GameModel.PLAYER1);
+				gm.getPoints(GameModel.PLAYER2);
+				gm.isWordPlayed();
+				gm.isWordPrefixOfPlayedWord();
+			}
+			Assert.assertEquals(0, Debug.getThreadAllocCount());
+		} finally {
+			Debug.stopAllocCounting();
+		}
+
+	}
+
+	/*
+	 * Test that every letter state is stored and reported unchanged, and is
+	 * copied into snapshots
+	 */
+	public void test_letterStates() {
+
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+		final LetterState[] values = LetterState.values();
+		LetterState[] states = new LetterState[GameModel.GRID_ITEMS];
+		for (int i = 0; i < states.length; ++i) {
+			states[i] = values[i % values.length];
+		}
+
+		GameModel gm = new GameModel(testGrid, states,
+				GameState.PLAYER1_TURN, 0, 0, getContext());
+		GameModel snapshot = new GameModel(gm);
+
+		for (int i = 0; i < states.length; ++i) {
+			Assert.assertEquals(testGrid[i], gm.getLetter(i));
+			Assert.assertEquals(states[i], gm.getLetterState(i));
+			Assert.assertEquals(testGrid[i], snapshot.getLetter(i));
+			Assert.assertEquals(states[i], snapshot.getLetterState(i));
+		}
+
+	}
+
+	/*
+	 * Test that a snapshot and the original game can be played
+	 * independently, and that words played in one are not seen by the other
+	 */
+	public void test_snapshot() {
+
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+
+		GameModel gm = createSampleModel(testGrid);
+		gm.setWord(generateIndexListFromWord("THE", testGrid));
+		Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+
+		GameModel snapshot = new GameModel(gm);
+		Assert.assertEquals(gm.getGameState(), snapshot.getGameState());
+		Assert.assertEquals(gm.getPoints(GameModel.PLAYER1),
+				snapshot.getPoints(GameModel.PLAYER1));
+
+		gm.setWord(generateIndexListFromWord("THEM", testGrid));
+		Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+
+		// The snapshot has not seen THEM, and its grid is unchanged
+		snapshot.setWord(generateIndexListFromWord("THEM", testGrid));
+		Assert.assertFalse(snapshot.isWordPlayed());
+		Assert.assertEquals(LetterState.UNPLAYED, snapshot.getLetterState(12));
+		Assert.assertEquals(LetterState.PLAYER2_OWNED, gm.getLetterState(12));
+
+		// Both know THE was played, and the original knows THEM was
+		snapshot.setWord(generateIndexListFromWord("THE", testGrid));
+		Assert.assertEquals(TurnResult.WORD_ALREADY_PLAYED, snapshot.playTurn());
+		gm.setWord(generateIndexListFromWord("THEM", testGrid));
+		Assert.assertEquals(TurnResult.WORD_ALREADY_PLAYED, gm.playTurn());
+
+	}
+
 	/*
 	 * Test that instances can be serialized and restored
 	 */
@@ -222,8 +497,327 @@ public class GameModelTest extends AndroidTestCase {
 		GameModel gm2 = GameModel.deserialize(s, getContext());
 		Assert.assertNotNull(gm2);
 		
+		// Played words are restored
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+		gm = createSampleModel(testGrid);
+		gm.setWord(generateIndexListFromWord("THE", testGrid));
+		Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+		gm2 = GameModel.deserialize(gm.serialize(), getContext());
+		gm2.setWord(generateIndexListFromWord("THE", testGrid));
+		Assert.assertEquals(TurnResult.WORD_ALREADY_PLAYED, gm2.playTurn());
+		gm2.setWord(generateIndexListFromWord("TH", testGrid));
+		Assert.assertEquals(TurnResult.WORD_IS_PREFIX_OF_PREVIOUS_TURN,
+				gm2.playTurn());
+
 	}
 	
+	/*
+	 * Test that games saved in the original format, before the grid was
+	 * stored as bit masks and the played words as ordinals, can be restored
+	 * and played on
+	 */
+	public void test_originalFormat() {
+
+		byte[] s = new byte[ORIGINAL_FORMAT_GAME.length() / 2];
+		for (int i = 0; i < s.length; ++i) {
+			s[i] = (byte) Integer.parseInt(
+					ORIGINAL_FORMAT_GAME.substring(2 * i, 2 * i + 2), 16);
+		}
+
+		GameModel gm = GameModel.deserialize(s, getContext());
+		Assert.assertNotNull(gm);
+
+		Assert.assertEquals(GameModel.GRID_COLUMNS, gm.getGridWidth());
+		Assert.assertEquals(GameModel.GRID_ROWS, gm.getGridHeight());
+		for (int i = 0; i < gm.getGridSize(); ++i) {
+			Assert.assertEquals((char) ('A' + i), gm.getLetter(i));
+		}
+		Assert.assertEquals(LetterState.PLAYER1_SURROUNDED, gm.getLetterState(0));
+		Assert.assertEquals(LetterState.PLAYER2_OWNED, gm.getLetterState(4));
+		Assert.assertEquals(LetterState.UNPLAYED, gm.getLetterState(5));
+		Assert.assertEquals(LetterState.PLAYER2_SURROUNDED, gm.getLetterState(12));
+		Assert.assertEquals(LetterState.PLAYER1_OWNED, gm.getLetterState(24));
+		Assert.assertEquals(GameState.PLAYER1_TURN, gm.getGameState());
+		Assert.assertEquals("TH", gm.getWord());
+
+		gm.setWord(null);
+		Assert.assertEquals(2, gm.getPoints(GameModel.PLAYER1));
+		Assert.assertEquals(2, gm.getPoints(GameModel.PLAYER2));
+
+		// The played words are kept
+		gm.setWord(new int[] { 12, 24 }, 2);
+		Assert.assertEquals(TurnResult.WORD_ALREADY_PLAYED, gm.playTurn());
+		gm.setWord(new int[] { 12 }, 1);
+		Assert.assertTrue(gm.isWordPrefixOfPlayedWord());
+
+		// Player 2 passed last, so a second pass ends the game
+		gm.passTurn();
+		Assert.assertEquals(GameState.GAME_OVER, gm.getGameState());
+
+		// A converted game is saved in the current format
+		gm = GameModel.deserialize(gm.serialize(), getContext());
+		Assert.assertEquals(GameState.GAME_OVER, gm.getGameState());
+		Assert.assertEquals(LetterState.PLAYER2_SURROUNDED, gm.getLetterState(12));
+
+	}
+
+	/*
+	 * Test that saved games whose fields do not fit together are rejected
+	 * rather than restored
+	 */
+	public void test_corruptGame() throws Exception {
+
+		final Object[][] corruptions = { { "mColumns", 3 },
+				{ "mRows", 65 }, { "mPlayer1Owned", new long[2] },
+				{ "mPlayer2Surrounded", null }, { "mWordLength", -1 },
+				{ "mWordLength", 1000 }, { "mWord", new int[] { 25, 0 } } };
+
+		for (Object[] corruption : corruptions) {
+
+			GameModel gm = new GameModel(getContext());
+			gm.setWord(new int[] { 0, 1 }, 2);
+			Field field = GameModel.class.getDeclaredField(
+					(String) corruption[0]);
+			field.setAccessible(true);
+			field.set(gm, corruption[1]);
+
+			Assert.assertNull((String) corruption[0],
+					GameModel.deserialize(gm.serialize(), getContext()));
+
+		}
+
+	}
+
+	/*
+	 * Test that games can be played on boards of other sizes, and that the
+	 * size is kept by snapshots and serialization
+	 */
+	public void test_gridSizes() {
+
+		final int[][] sizes = { { 4, 4 }, { 6, 9 }, { 15, 15 }, { 64, 64 } };
+
+		for (int[] size : sizes) {
+
+			GameModel gm = new GameModel(getContext(), size[0], size[1]);
+			Assert.assertEquals(size[0], gm.getGridWidth());
+			Assert.assertEquals(size[1], gm.getGridHeight());
+			Assert.assertEquals(size[0] * size[1], gm.getGridSize());
+
+			int letters = 0;
+			for (int count : gm.getLetterCounts()) {
+				letters += count;
+			}
+			Assert.assertEquals(gm.getGridSize(), letters);
+
+			GameModel gm2 = GameModel.deserialize(gm.serialize(), getContext());
+			Assert.assertEquals(size[0], gm2.getGridWidth());
+			Assert.assertEquals(size[1], gm2.getGridHeight());
+			Assert.assertEquals(gm.getLetter(gm.getGridSize() - 1),
+					gm2.getLetter(gm2.getGridSize() - 1));
+			Assert.assertEquals(size[1], new GameModel(gm).getGridHeight());
+
+		}
+
+		final int[][] invalidSizes = { { 3, 5 }, { 5, 3 }, { 65, 5 },
+				{ 5, 65 }, { 0, 0 } };
+
+		for (int[] size : invalidSizes) {
+			try {
+				new GameModel(getContext(), size[0], size[1]);
+				Assert.fail(size[0] + "x" + size[1]);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+
+		// Capture a corner of a board that is wider than it is tall
+		final char[] testGrid =
+				("AHBCDF" +
+				 "TGEMKL" +
+				 "NOPQRS" +
+				 "UVWXYZ").toCharArray();
+		LetterState[] states = new LetterState[testGrid.length];
+		for (int i = 0; i < states.length; ++i) {
+			states[i] = LetterState.UNPLAYED;
+		}
+
+		GameModel gm = new GameModel(6, 4, testGrid, states,
+				GameState.PLAYER1_TURN, 0, 0, getContext());
+		gm.setWord(generateIndexListFromWord("THEM", testGrid));
+		Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+		Assert.assertEquals(5, gm.getPoints(GameModel.PLAYER1));
+		Assert.assertEquals(LetterState.PLAYER1_SURROUNDED, gm.getLetterState(0));
+		Assert.assertEquals(LetterState.PLAYER1_OWNED, gm.getLetterState(1));
+		Assert.assertEquals(LetterState.UNPLAYED, gm.getLetterState(7));
+
+	}
+
+	/*
+	 * Describe everything about a game that a move can change
+	 */
+	private static String describe(GameModel gm) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < gm.getGridSize(); ++i) {
+			sb.append(gm.getLetterState(i).ordinal());
+		}
+		sb.append(' ').append(gm.getPoints(GameModel.PLAYER1));
+		sb.append(' ').append(gm.getPoints(GameModel.PLAYER2));
+		sb.append(' ').append(gm.getGameState());
+		sb.append(' ').append(gm.getResult());
+		return sb.toString();
+	}
+
+	/*
+	 * Test that moves made and unmade in random games match turns played on
+	 * a copy of the game, and that unmaking a move restores the game
+	 */
+	public void test_makeMove() {
+
+		final int games = 20;
+		final int maxDepth = 12;
+
+		Random r = new Random(25);
+		MoveGenerator generator = new MoveGenerator(
+				SharedDictionary.getAnagramIndex(getContext()));
+
+		for (int game = 0; game < games; ++game) {
+
+			GameModel gm = new GameModel(getContext());
+			GameModel reference = new GameModel(gm);
+			List<String> before = new ArrayList<String>();
+			int[] played = null;
+
+			while (gm.getMoveDepth() < maxDepth
+					&& gm.getGameState() != GameState.GAME_OVER) {
+
+				final List<int[]> moves = new ArrayList<int[]>();
+				generator.generateMoves(gm, new MoveGenerator.Visitor() {
+
+					@Override
+					public boolean visitMove(MoveGenerator.Move move) {
+						int[] tiles = new int[move.length()];
+						move.getFirstTiles(tiles);
+						moves.add(tiles);
+						return true;
+					}
+
+				});
+
+				before.add(describe(gm));
+
+				if (moves.isEmpty() || r.nextInt(5) == 0) {
+					gm.makePass();
+					reference.passTurn();
+				} else {
+					int[] tiles = moves.get(r.nextInt(moves.size()));
+					Assert.assertEquals(TurnResult.SUCCESS,
+							gm.makeMove(tiles, tiles.length));
+					reference.setWord(tiles, tiles.length);
+					Assert.assertEquals(TurnResult.SUCCESS,
+							reference.playTurn());
+
+					// The word can not be played again until it is unmade
+					Assert.assertEquals(TurnResult.WORD_ALREADY_PLAYED,
+							gm.makeMove(tiles, tiles.length));
+					gm.setWord(null);
+					played = tiles;
+				}
+
+				Assert.assertEquals(before.size(), gm.getMoveDepth());
+				Assert.assertEquals(describe(reference), describe(gm));
+
+			}
+
+			// A snapshot knows the words made, and unmakes the moves without
+			// changing the original
+			GameModel snapshot = new GameModel(gm);
+			Assert.assertEquals(gm.getMoveDepth(), snapshot.getMoveDepth());
+			if (played != null) {
+				Assert.assertEquals(TurnResult.WORD_ALREADY_PLAYED,
+						snapshot.makeMove(played, played.length));
+				snapshot.setWord(null);
+			}
+			for (int i = before.size() - 1; i >= 0; --i) {
+				snapshot.unmakeMove();
+				Assert.assertEquals(before.get(i), describe(snapshot));
+			}
+			Assert.assertEquals(describe(reference), describe(gm));
+
+			while (gm.getMoveDepth() > 0) {
+				gm.unmakeMove();
+				Assert.assertEquals(before.remove(before.size() - 1),
+						describe(gm));
+			}
+
+			// The moves can be made again
+			gm.passTurn();
+
+		}
+
+		try {
+			new GameModel(getContext()).unmakeMove();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+	}
+
+	/*
+	 * Test that making and unmaking moves allocates nothing once the undo
+	 * stack is deep enough
+	 */
+	public void test_makeMoveAllocations() {
+
+		final char[] testGrid =
+				("ABCDE" +
+				 "FGHIJ" +
+				 "KLMNO" +
+				 "PQRST" +
+				 "UVWXY").toCharArray();
+		final int[] the = { 19, 7, 4 };
+		final int[] them = { 19, 7, 4, 12 };
+		final int[] my = { 12, 24 };
+		final int runs = 100;
+
+		GameModel gm = createSampleModel(testGrid);
+
+		// Grow the undo stack and create the model's buffers
+		Assert.assertEquals(TurnResult.SUCCESS, gm.makeMove(them, 4));
+		Assert.assertEquals(TurnResult.SUCCESS, gm.makeMove(my, 2));
+		gm.makePass();
+		gm.unmakeMove();
+		gm.unmakeMove();
+		gm.unmakeMove();
+
+		Debug.startAllocCounting();
+		try {
+			Debug.resetThreadAllocCount();
+
+			for (int i = 0; i < runs; ++i) {
+				gm.makeMove(the, 3);
+				gm.makeMove(my, 2);
+				gm.makePass();
+				gm.unmakeMove();
+				gm.unmakeMove();
+				gm.unmakeMove();
+			}
+
+			Assert.assertEquals(0, Debug.getThreadAllocCount());
+		} finally {
+			Debug.stopAllocCounting();
+		}
+
+		Assert.assertEquals(0, gm.getMoveDepth());
+		Assert.assertEquals(0, gm.getPoints(GameModel.PLAYER1));
+
+	}
+
 	/*
 	 * Test that two passes end the game
 	 */
@@ -0,0 +1,108 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.AnagramIndex;
+import com.andrewpmsmith.movabletype.model.LetterCountFilter;
+import com.andrewpmsmith.movabletype.model.WordVisitor;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class LetterCountFilterTest extends TestCase {
+
+	/*
+	 * Returns a list of random words of between 2 and 8 letters
+	 */
+	private List<String> randomWords(Random r, int count) {
+		List<String> words = new ArrayList<String>(count);
+		for (int i = 0; i < count; ++i) {
+			int length = 2 + r.nextInt(7);
+			StringBuilder sb = new StringBuilder(length);
+			for (int j = 0; j < length; ++j) {
+				sb.append((char) ('A' + r.nextInt(26)));
+			}
+			words.add(sb.toString());
+		}
+		return words;
+	}
+
+	private int[] randomLetterCounts(Random r, int letters) {
+		int[] counts = new int[26];
+		for (int i = 0; i < letters; ++i) {
+			++counts[r.nextInt(26)];
+		}
+		return counts;
+	}
+
+	/*
+	 * Test that the filter finds exactly the same words as the anagram index,
+	 * including words with more of one letter than a packed counter can hold
+	 */
+	public void test_matchesAnagramIndex() {
+
+		Random r = new Random(1);
+		List<String> words = randomWords(r, 2000);
+		words.add("AAAAAAAA");
+		words.add("ZZZZZZZZZ");
+		words.add("ZZZZZZZ");
+
+		LetterCountFilter filter = LetterCountFilter.create(words);
+		AnagramIndex.Builder builder = new AnagramIndex.Builder();
+		for (String word : words) {
+			builder.add(word);
+		}
+		AnagramIndex index = builder.build();
+
+		Assert.assertEquals(words.size(), filter.getWordCount());
+
+		for (int i = 0; i < 200; ++i) {
+			int[] counts = randomLetterCounts(r, 5 + r.nextInt(40));
+			if (i % 10 == 0)
+				counts[25] = 8 + r.nextInt(2);
+
+			List<String> expected = index.findWords(counts);
+			List<String> actual = filter.findWords(counts);
+			Collections.sort(expected);
+			Collections.sort(actual);
+
+			Assert.assertEquals(expected, actual);
+		}
+
+	}
+
+	/*
+	 * Test that the scan stops when the visitor asks it to
+	 */
+	public void test_stop() {
+
+		List<String> words = new ArrayList<String>();
+		words.add("AB");
+		words.add("BA");
+		words.add("AAB");
+
+		LetterCountFilter filter = LetterCountFilter.create(words);
+		int[] counts = new int[26];
+		counts[0] = 2;
+		counts[1] = 1;
+		final int[] visited = { 0 };
+
+		boolean completed = filter.findWords(counts, new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				++visited[0];
+				return false;
+			}
+
+		});
+
+		Assert.assertFalse(completed);
+		Assert.assertEquals(1, visited[0]);
+
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.MappedDawg;
+import com.andrewpmsmith.movabletype.model.WordVisitor;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class MappedDawgTest extends TestCase {
+
+	private File mFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mFile = File.createTempFile("dictionary", ".bin");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mFile.delete();
+		super.tearDown();
+	}
+
+	private List<String> randomWords(Random r, int count) {
+		TreeSet<String> words = new TreeSet<String>();
+		while (words.size() < count) {
+			int length = 2 + r.nextInt(8);
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < length; ++i) {
+				sb.append((char) ('A' + r.nextInt(8)));
+			}
+			words.add(sb.toString());
+		}
+		return new ArrayList<String>(words);
+	}
+
+	private Dawg writeDawg(List<String> words) throws IOException {
+		Dawg.Builder builder = new Dawg.Builder();
+		for (String word : words) {
+			builder.add(word);
+		}
+		Dawg dawg = builder.build();
+
+		OutputStream os = new FileOutputStream(mFile);
+		try {
+			dawg.write(os);
+		} finally {
+			os.close();
+		}
+		return dawg;
+	}
+
+	/*
+	 * Test that the mapped file answers every lookup exactly as the Dawg it
+	 * was written from
+	 */
+	public void test_matchesDawg() throws IOException {
+
+		Random r = new Random(8);
+		List<String> words = randomWords(r, 5000);
+		Dawg dawg = writeDawg(words);
+
+		MappedDawg mapped = MappedDawg.map(mFile);
+
+		Assert.assertEquals(dawg.getWordCount(), mapped.getWordCount());
+		Assert.assertEquals(dawg.getNodeCount(), mapped.getNodeCount());
+		Assert.assertEquals(dawg.getEdgeCount(), mapped.getEdgeCount());
+
+		for (String word : words) {
+			Assert.assertTrue(mapped.wordInDictionary(word));
+		}
+		for (String word : randomWords(r, 5000)) {
+			Assert.assertEquals(dawg.wordInDictionary(word),
+					mapped.wordInDictionary(word));
+		}
+
+		for (int i = 0; i < words.size(); ++i) {
+			String word = words.get(i);
+			Assert.assertEquals(i, mapped.getOrdinal(word));
+			Assert.assertEquals(word, mapped.getWord(i));
+			for (int j = 0; j <= word.length(); ++j) {
+				String prefix = word.substring(0, j);
+				Assert.assertEquals(dawg.getPrefixStart(prefix),
+						mapped.getPrefixStart(prefix));
+				Assert.assertEquals(dawg.getPrefixEnd(prefix),
+						mapped.getPrefixEnd(prefix));
+			}
+		}
+		Assert.assertEquals(dawg.getOrdinal("ABC"), mapped.getOrdinal("ABC"));
+
+		Assert.assertFalse(mapped.wordInDictionary(null));
+		Assert.assertFalse(mapped.wordInDictionary(""));
+		Assert.assertFalse(mapped.wordInDictionary("abc"));
+
+		final List<String> visited = new ArrayList<String>();
+		Assert.assertTrue(mapped.visitWords(new WordVisitor() {
+
+			@Override
+			public boolean visitWord(String word) {
+				visited.add(word);
+				return true;
+			}
+
+		}));
+		Assert.assertEquals(words, visited);
+
+	}
+
+	/*
+	 * Test that files that are not dictionaries, or are truncated, are
+	 * rejected
+	 */
+	public void test_invalidFile() throws IOException {
+
+		OutputStream os = new FileOutputStream(mFile);
+		os.write(new byte[] { 1, 2, 3, 4 });
+		os.close();
+
+		try {
+			MappedDawg.map(mFile);
+			Assert.fail("Invalid data was accepted");
+		} catch (IOException e) {
+			// expected
+		}
+
+		List<String> words = new ArrayList<String>();
+		words.add("CAT");
+		writeDawg(words);
+		RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+		raf.setLength(mFile.length() - 4);
+		raf.close();
+
+		try {
+			MappedDawg.map(mFile);
+			Assert.fail("Truncated data was accepted");
+		} catch (IOException e) {
+			// expected
+		}
+
+	}
+
+}
@@ -0,0 +1,214 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.Random;
+
+import android.test.AndroidTestCase;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.MoveEvaluator;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+import com.andrewpmsmith.movabletype.model.SharedDictionary;
+
+import junit.framework.Assert;
+
+public class MoveEvaluatorTest extends AndroidTestCase {
+
+	private MoveGenerator createGenerator() {
+		return new MoveGenerator(SharedDictionary.getAnagramIndex(getContext()));
+	}
+
+	/*
+	 * Returns the player to move's points minus their opponent's
+	 */
+	private static int getLead(GameModel gm, boolean player1) {
+		int lead = gm.getPoints(GameModel.PLAYER1)
+				- gm.getPoints(GameModel.PLAYER2);
+		return player1 ? lead : -lead;
+	}
+
+	/*
+	 * Returns the change in the player to move's lead from playing the word
+	 * on the given tiles, on a snapshot so that the game is unchanged
+	 */
+	private static int play(GameModel gm, int[] tiles, int length) {
+
+		boolean player1 = gm.getGameState() == GameState.PLAYER1_TURN;
+		GameModel snapshot = new GameModel(gm);
+		snapshot.setWord(null);
+		int lead = getLead(snapshot, player1);
+
+		snapshot.setWord(tiles, length);
+		Assert.assertEquals(TurnResult.SUCCESS, snapshot.playTurn());
+		return getLead(snapshot, player1) - lead;
+
+	}
+
+	/*
+	 * Returns the best change in lead over every way of choosing the tiles
+	 */
+	private static int bestPlay(GameModel gm, MoveGenerator.Move move,
+			int position, int[] tiles, boolean[] used) {
+
+		if (position == move.length())
+			return play(gm, tiles, position);
+
+		int best = Integer.MIN_VALUE;
+		for (int i = 0; i < move.getTileChoiceCount(position); ++i) {
+			int tile = move.getTileChoice(position, i);
+			if (!used[tile]) {
+				used[tile] = true;
+				tiles[position] = tile;
+				best = Math.max(best, bestPlay(gm, move, position + 1, tiles,
+						used));
+				used[tile] = false;
+			}
+		}
+		return best;
+
+	}
+
+	/*
+	 * Returns the number of ways of choosing the tiles
+	 */
+	private static long countAssignments(MoveGenerator.Move move) {
+		long count = 1;
+		int[] uses = new int[26];
+		for (int i = 0; i < move.length(); ++i) {
+			count *= move.getTileChoiceCount(i)
+					- uses[move.getWord().charAt(i) - 'A']++;
+		}
+		return count;
+	}
+
+	/*
+	 * Test that the evaluator finds the best tiles for a word whose letters
+	 * are on more than one tile. Player 2 owns M and plays ME on the E that
+	 * completes the surrounding of the corner, capturing it.
+	 */
+	public void test_capture() {
+
+		final char[] grid =
+				("AEBCD" +
+				 "MFGHE" +
+				 "IJKLN" +
+				 "OPQRS" +
+				 "TUVWX").toCharArray();
+		final LetterState UNPLAYED = LetterState.UNPLAYED;
+		final LetterState OWNED = LetterState.PLAYER2_OWNED;
+		final LetterState[] states = {
+				UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,
+				UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,
+				UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,
+				UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,
+				UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,UNPLAYED,};
+		states[5] = OWNED;
+
+		GameModel gm = new GameModel(grid, states, GameState.PLAYER2_TURN,
+				0, 1, getContext());
+		final MoveEvaluator evaluator = new MoveEvaluator(
+				gm.getGridWidth(), gm.getGridHeight());
+		evaluator.setGame(gm);
+
+		final int[] tiles = new int[gm.getGridSize()];
+		final int[] gain = { Integer.MIN_VALUE };
+
+		createGenerator().generateMoves(gm, new MoveGenerator.Visitor() {
+
+			@Override
+			public boolean visitMove(MoveGenerator.Move move) {
+				if (move.getWord().equals("ME"))
+					gain[0] = evaluator.evaluate(move, tiles);
+				return true;
+			}
+
+		});
+
+		// The E, and the A in the corner
+		Assert.assertEquals(2, gain[0]);
+		Assert.assertEquals(5, tiles[0]);
+		Assert.assertEquals(1, tiles[1]);
+		Assert.assertEquals(2, play(gm, tiles, 2));
+
+	}
+
+	/*
+	 * Test that the evaluator matches trying every choice of tiles in games
+	 * that have been played for a few turns
+	 */
+	public void test_randomGames() {
+
+		final int games = 6;
+		final int turns = 6;
+		final long maxAssignments = 200;
+
+		Random r = new Random(24);
+		MoveGenerator generator = createGenerator();
+
+		for (int game = 0; game < games; ++game) {
+
+			final GameModel gm = new GameModel(getContext());
+			final MoveEvaluator evaluator = new MoveEvaluator(
+					gm.getGridWidth(), gm.getGridHeight());
+			final int[] tiles = new int[gm.getGridSize()];
+			final int[] bestTiles = new int[gm.getGridSize()];
+
+			for (int turn = 0; turn < turns
+					&& gm.getGameState() != GameState.GAME_OVER; ++turn) {
+
+				evaluator.setGame(gm);
+				final int[] best = { Integer.MIN_VALUE, 0 };
+				final int[] checked = new int[1];
+
+				generator.generateMoves(gm, new MoveGenerator.Visitor() {
+
+					@Override
+					public boolean visitMove(MoveGenerator.Move move) {
+
+						int gain = evaluator.evaluate(move, tiles);
+						Assert.assertEquals(move.getWord(), gain,
+								play(gm, tiles, move.length()));
+
+						if (countAssignments(move) <= maxAssignments) {
+							++checked[0];
+							Assert.assertEquals(move.getWord(), bestPlay(gm,
+									move, 0, new int[move.length()],
+									new boolean[gm.getGridSize()]), gain);
+						}
+
+						if (gain > best[0]) {
+							best[0] = gain;
+							best[1] = move.length();
+							System.arraycopy(tiles, 0, bestTiles, 0,
+									move.length());
+						}
+						return true;
+
+					}
+
+				});
+
+				if (best[0] == Integer.MIN_VALUE) {
+					gm.passTurn();
+					continue;
+				}
+				Assert.assertTrue(checked[0] > 0);
+
+				// Sometimes play the best move, to get captures on the board
+				if (r.nextBoolean()) {
+					gm.setWord(bestTiles, best[1]);
+					Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+				} else {
+					gm.passTurn();
+					if (gm.getGameState() == GameState.GAME_OVER)
+						break;
+				}
+
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,195 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import android.test.AndroidTestCase;
+
+import com.andrewpmsmith.movabletype.model.GameModel;
+import com.andrewpmsmith.movabletype.model.GameModel.GameState;
+import com.andrewpmsmith.movabletype.model.GameModel.LetterState;
+import com.andrewpmsmith.movabletype.model.GameModel.TurnResult;
+import com.andrewpmsmith.movabletype.model.MoveGenerator;
+import com.andrewpmsmith.movabletype.model.SharedDictionary;
+
+import junit.framework.Assert;
+
+public class MoveGeneratorTest extends AndroidTestCase {
+
+	private GameModel createModel(String letters) {
+		char[] grid = letters.toCharArray();
+		LetterState[] states = new LetterState[grid.length];
+		for (int i = 0; i < states.length; ++i) {
+			states[i] = LetterState.UNPLAYED;
+		}
+		return new GameModel(grid, states, GameState.PLAYER1_TURN, 0, 0,
+				getContext());
+	}
+
+	private MoveGenerator createGenerator() {
+		return new MoveGenerator(SharedDictionary.getAnagramIndex(getContext()));
+	}
+
+	private Set<String> generateWords(GameModel gm) {
+
+		final Set<String> words = new HashSet<String>();
+
+		Assert.assertTrue(createGenerator().generateMoves(gm,
+				new MoveGenerator.Visitor() {
+
+					@Override
+					public boolean visitMove(MoveGenerator.Move move) {
+						Assert.assertTrue(move.getWord(),
+								words.add(move.getWord()));
+						return true;
+					}
+
+				}));
+
+		return words;
+
+	}
+
+	/*
+	 * Returns the result of playing the word with the first tiles for each
+	 * letter, on a snapshot so that the game is unchanged
+	 */
+	private TurnResult tryWord(GameModel gm, String word) {
+
+		int[] tiles = new int[word.length()];
+		boolean[] used = new boolean[gm.getGridSize()];
+		for (int i = 0; i < word.length(); ++i) {
+			for (int tile = 0; tile < gm.getGridSize(); ++tile) {
+				if (!used[tile] && gm.getLetter(tile) == word.charAt(i)) {
+					used[tile] = true;
+					tiles[i] = tile;
+					break;
+				}
+			}
+		}
+
+		GameModel snapshot = new GameModel(gm);
+		snapshot.setWord(tiles, tiles.length);
+		return snapshot.playTurn();
+
+	}
+
+	/*
+	 * Test that the moves are exactly the words that can be made from the
+	 * grid and that the game accepts
+	 */
+	public void test_generateMoves() {
+
+		final String letters =
+				"ABCDE" +
+				"FGHIJ" +
+				"KLMNO" +
+				"PQRST" +
+				"UVWXY";
+
+		GameModel gm = createModel(letters);
+		Assert.assertEquals(TurnResult.SUCCESS, tryWord(gm, "THE"));
+		gm.setWord(new int[] { 19, 7, 4 }, 3);
+		Assert.assertEquals(TurnResult.SUCCESS, gm.playTurn());
+
+		Set<String> words = generateWords(gm);
+		Assert.assertTrue(words.contains("THEM"));
+		Assert.assertFalse(words.contains("THE"));
+		Assert.assertFalse(words.contains("TH"));
+
+		// Every word that can be made from the grid is a move if and only if
+		// the game would accept it
+		int[] counts = gm.getLetterCounts();
+		int candidates = 0;
+		for (String word : SharedDictionary.getLetterCountFilter(getContext())
+				.findWords(counts)) {
+			++candidates;
+			Assert.assertEquals(word, tryWord(gm, word) == TurnResult.SUCCESS,
+					words.contains(word));
+		}
+		Assert.assertTrue(candidates > words.size());
+
+	}
+
+	/*
+	 * Test the tile choices for letters that appear more than once on the
+	 * grid
+	 */
+	public void test_tileChoices() {
+
+		final String letters =
+				"SEEDA" +
+				"FGHIJ" +
+				"KLMNO" +
+				"PQRET" +
+				"UVWXY";
+
+		GameModel gm = createModel(letters);
+		final int[] tiles = new int[gm.getGridSize()];
+		final int[] found = new int[1];
+
+		createGenerator().generateMoves(gm, new MoveGenerator.Visitor() {
+
+			@Override
+			public boolean visitMove(MoveGenerator.Move move) {
+
+				if (!move.getWord().equals("SEED"))
+					return true;
+
+				++found[0];
+				Assert.assertEquals(1, move.getTileChoiceCount(0));
+				Assert.assertEquals(0, move.getTileChoice(0, 0));
+				Assert.assertEquals(3, move.getTileChoiceCount(1));
+				Assert.assertEquals(1, move.getTileChoice(1, 0));
+				Assert.assertEquals(2, move.getTileChoice(1, 1));
+				Assert.assertEquals(18, move.getTileChoice(1, 2));
+				Assert.assertEquals(3, move.getTileChoiceCount(2));
+
+				Assert.assertEquals(4, move.getFirstTiles(tiles));
+				Assert.assertEquals(0, tiles[0]);
+				Assert.assertEquals(1, tiles[1]);
+				Assert.assertEquals(2, tiles[2]);
+				Assert.assertEquals(3, tiles[3]);
+				return true;
+
+			}
+
+		});
+
+		Assert.assertEquals(1, found[0]);
+
+	}
+
+	/*
+	 * Test that the visitor can stop the search, and that there are no moves
+	 * once the game is over
+	 */
+	public void test_stop() {
+
+		GameModel gm = createModel("ABCDEFGHIJKLMNOPQRSTUVWXY");
+		final int[] visited = new int[1];
+
+		MoveGenerator.Visitor stop = new MoveGenerator.Visitor() {
+
+			@Override
+			public boolean visitMove(MoveGenerator.Move move) {
+				++visited[0];
+				return false;
+			}
+
+		};
+
+		MoveGenerator generator = createGenerator();
+		Assert.assertFalse(generator.generateMoves(gm, stop));
+		Assert.assertEquals(1, visited[0]);
+
+		gm.passTurn();
+		gm.passTurn();
+		Assert.assertEquals(GameState.GAME_OVER, gm.getGameState());
+		visited[0] = 0;
+		Assert.assertTrue(generator.generateMoves(gm, stop));
+		Assert.assertEquals(0, visited[0]);
+
+	}
+
+}
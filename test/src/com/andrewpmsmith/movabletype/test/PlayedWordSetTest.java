@@ -0,0 +1,204 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.PlayedWordSet;
+import com.andrewpmsmith.movabletype.model.Serializer;
+import com.andrewpmsmith.movabletype.model.WordOrdinals;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class PlayedWordSetTest extends TestCase {
+
+	private static final String[] WORDS = {
+		"CAT", "CATS", "DOG", "DOGS", "DOT", "DOTS", "THE", "THEM", "ZOO"
+	};
+
+	private Dawg createDictionary(String[] words) {
+		Dawg.Builder builder = new Dawg.Builder();
+		for (String word : words) {
+			Assert.assertTrue(builder.add(word));
+		}
+		return builder.build();
+	}
+
+	/*
+	 * Test membership and prefix checks, and that adding a word leaves the
+	 * original set unchanged
+	 */
+	public void test_functional() {
+
+		Dawg dictionary = createDictionary(WORDS);
+		PlayedWordSet empty = new PlayedWordSet(dictionary);
+		PlayedWordSet set = empty.add(dictionary.getOrdinal("DOGS"));
+		set = set.add(dictionary.getOrdinal("CAT"));
+
+		Assert.assertEquals(0, empty.size());
+		Assert.assertFalse(empty.contains("CAT"));
+		Assert.assertFalse(empty.containsPrefix("C"));
+		Assert.assertTrue(empty.containsPrefix(""));
+
+		Assert.assertEquals(2, set.size());
+		Assert.assertTrue(set.contains("CAT"));
+		Assert.assertTrue(set.contains("DOGS"));
+		Assert.assertFalse(set.contains("DOG"));
+		Assert.assertFalse(set.contains("CATS"));
+		Assert.assertFalse(set.contains("XYZ"));
+		Assert.assertFalse(set.contains((String) null));
+		Assert.assertTrue(set.getOrdinal(0) < set.getOrdinal(1));
+
+		final String[] prefixes = { "C", "CA", "CAT", "D", "DO", "DOG", "DOGS" };
+		for (String prefix : prefixes) {
+			Assert.assertTrue(prefix, set.containsPrefix(prefix));
+		}
+		final String[] nonPrefixes = { "CATS", "DOT", "DOGSS", "A", "Z", "B" };
+		for (String prefix : nonPrefixes) {
+			Assert.assertFalse(prefix, set.containsPrefix(prefix));
+		}
+		Assert.assertFalse(set.containsPrefix(null));
+
+		// Duplicates do not create a new set
+		Assert.assertSame(set, set.add(dictionary.getOrdinal("CAT")));
+		Assert.assertSame(set, set.add("CAT"));
+
+		try {
+			set.add(WordOrdinals.NOT_FOUND);
+			Assert.fail("A missing ordinal was accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+	}
+
+	/*
+	 * Test that words without an ordinal are kept as strings, with or
+	 * without a dictionary
+	 */
+	public void test_wordsWithoutOrdinals() {
+
+		Dawg dictionary = createDictionary(WORDS);
+		PlayedWordSet[] sets = { new PlayedWordSet(dictionary),
+				new PlayedWordSet(null) };
+
+		for (PlayedWordSet set : sets) {
+
+			set = set.add("DOG").add("AXE").add("ZEBRA");
+			Assert.assertSame(set, set.add("AXE"));
+
+			Assert.assertEquals(3, set.size());
+			Assert.assertTrue(set.contains("DOG"));
+			Assert.assertTrue(set.contains("AXE"));
+			Assert.assertTrue(set.contains("ZEBRA"));
+			Assert.assertFalse(set.contains("AX"));
+			Assert.assertFalse(set.contains("CAT"));
+
+			final String[] prefixes = { "A", "AX", "AXE", "D", "DOG", "ZE" };
+			for (String prefix : prefixes) {
+				Assert.assertTrue(prefix, set.containsPrefix(prefix));
+			}
+			final String[] nonPrefixes = { "AXES", "B", "DOGS", "ZA", "ZOO" };
+			for (String prefix : nonPrefixes) {
+				Assert.assertFalse(prefix, set.containsPrefix(prefix));
+			}
+
+			// All of the words are saved, and get ordinals where they can
+			PlayedWordSet copy = ((PlayedWordSet) Serializer
+					.deserialize(Serializer.serialize(set)))
+					.withDictionary(dictionary);
+			Assert.assertEquals(3, copy.size());
+			Assert.assertTrue(copy.contains(dictionary.getOrdinal("DOG")));
+			Assert.assertTrue(copy.contains("AXE"));
+			Assert.assertTrue(copy.containsPrefix("ZEB"));
+
+		}
+
+	}
+
+	/*
+	 * Test prefix checks against a brute force search over random words
+	 */
+	public void test_randomPrefixes() {
+
+		Random r = new Random(15);
+		TreeSet<String> words = new TreeSet<String>();
+		while (words.size() < 300) {
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + r.nextInt(5);
+			for (int j = 0; j < length; ++j) {
+				sb.append((char) ('A' + r.nextInt(4)));
+			}
+			words.add(sb.toString());
+		}
+		String[] all = words.toArray(new String[words.size()]);
+
+		// Only half of the words have ordinals
+		String[] half = new String[all.length / 2];
+		for (int i = 0; i < half.length; ++i) {
+			half[i] = all[i * 2];
+		}
+		Dawg dictionary = createDictionary(half);
+
+		Set<String> played = new HashSet<String>();
+		PlayedWordSet set = new PlayedWordSet(dictionary);
+		for (int i = 0; i < 40; ++i) {
+			String word = all[r.nextInt(all.length)];
+			played.add(word);
+			set = set.add(word);
+		}
+
+		for (String prefix : all) {
+			boolean expected = false;
+			for (String word : played) {
+				expected |= word.startsWith(prefix);
+			}
+			Assert.assertEquals(prefix, expected, set.containsPrefix(prefix));
+			Assert.assertEquals(prefix, played.contains(prefix),
+					set.contains(prefix));
+		}
+
+	}
+
+	/*
+	 * Test that a set is saved as words, so that it can be restored with a
+	 * dictionary in which the words have different ordinals
+	 */
+	public void test_serialization() {
+
+		Dawg dictionary = createDictionary(WORDS);
+		PlayedWordSet set = new PlayedWordSet(dictionary);
+		set = set.add(dictionary.getOrdinal("THE"));
+		set = set.add(dictionary.getOrdinal("DOTS"));
+
+		PlayedWordSet copy = (PlayedWordSet) Serializer.deserialize(Serializer
+				.serialize(set));
+		Assert.assertNotNull(copy);
+		Assert.assertFalse(copy.isResolved());
+		Assert.assertEquals(2, copy.size());
+
+		// A set that has not been given a dictionary can be saved again
+		PlayedWordSet saved = (PlayedWordSet) Serializer
+				.deserialize(Serializer.serialize(copy));
+		Assert.assertEquals(2, saved.size());
+
+		// A rebuilt dictionary with an extra word before the others
+		String[] rebuilt = new String[WORDS.length + 1];
+		rebuilt[0] = "ANT";
+		System.arraycopy(WORDS, 0, rebuilt, 1, WORDS.length);
+		Dawg newDictionary = createDictionary(rebuilt);
+
+		copy = copy.withDictionary(newDictionary);
+		Assert.assertTrue(copy.isResolved());
+		Assert.assertTrue(copy.contains("THE"));
+		Assert.assertTrue(copy.contains("DOTS"));
+		Assert.assertFalse(copy.contains("DOT"));
+		Assert.assertTrue(copy.containsPrefix("TH"));
+		Assert.assertEquals(newDictionary.getOrdinal("DOTS"), copy.getOrdinal(0));
+
+	}
+
+}
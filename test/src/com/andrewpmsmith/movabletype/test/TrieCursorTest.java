@@ -0,0 +1,131 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.TrieCursor;
+import com.andrewpmsmith.movabletype.model.WordTrie;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TrieCursorTest extends TestCase {
+
+	private static final String[] WORDS = {
+		"CAT", "CATS", "DOG", "DOGS", "DOT", "DOTS", "ZOO"
+	};
+
+	private WordTrie createSampleTrie() {
+		WordTrie wt = new WordTrie();
+		for (String word : WORDS) {
+			wt.add(word);
+		}
+		return wt;
+	}
+
+	/*
+	 * Push and pop letters, checking the cursor at each step
+	 */
+	private void checkCursor(TrieCursor cursor) {
+
+		Assert.assertEquals(0, cursor.getDepth());
+		Assert.assertTrue(cursor.isPrefix());
+		Assert.assertFalse(cursor.isWord());
+
+		Assert.assertTrue(cursor.push('C'));
+		Assert.assertTrue(cursor.push('A'));
+		Assert.assertFalse(cursor.isWord());
+		Assert.assertTrue(cursor.push('T'));
+		Assert.assertTrue(cursor.isWord());
+		Assert.assertTrue(cursor.push('S'));
+		Assert.assertTrue(cursor.isWord());
+		Assert.assertEquals(4, cursor.getDepth());
+
+		// Move off the end of the trie and back
+		Assert.assertFalse(cursor.push('S'));
+		Assert.assertFalse(cursor.push('X'));
+		Assert.assertFalse(cursor.isPrefix());
+		Assert.assertFalse(cursor.isWord());
+		cursor.pop();
+		cursor.pop();
+		Assert.assertTrue(cursor.isWord());
+
+		cursor.pop();
+		cursor.pop();
+		cursor.pop();
+		cursor.pop();
+		Assert.assertEquals(0, cursor.getDepth());
+		Assert.assertTrue(cursor.push('D'));
+		Assert.assertTrue(cursor.push('O'));
+		Assert.assertFalse(cursor.push('W'));
+
+		// Characters outside A to Z are never part of a word
+		cursor.reset();
+		Assert.assertEquals(0, cursor.getDepth());
+		Assert.assertFalse(cursor.push('c'));
+		cursor.pop();
+		cursor.pop();
+		Assert.assertEquals(0, cursor.getDepth());
+		Assert.assertTrue(cursor.push('Z'));
+
+	}
+
+	public void test_wordTrieCursor() {
+		checkCursor(createSampleTrie().newCursor());
+	}
+
+	public void test_dawgCursor() {
+		checkCursor(createSampleTrie().freeze().newCursor());
+	}
+
+	/*
+	 * Test that random walks agree with whole word lookups
+	 */
+	public void test_randomWalk() {
+
+		Random r = new Random(12);
+		WordTrie wt = new WordTrie();
+		for (int i = 0; i < 3000; ++i) {
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + r.nextInt(6);
+			for (int j = 0; j < length; ++j) {
+				sb.append((char) ('A' + r.nextInt(5)));
+			}
+			wt.add(sb.toString());
+		}
+		Dawg dawg = wt.freeze();
+
+		List<TrieCursor> cursors = new ArrayList<TrieCursor>();
+		cursors.add(wt.newCursor());
+		cursors.add(dawg.newCursor());
+
+		StringBuilder word = new StringBuilder();
+		for (int step = 0; step < 20000; ++step) {
+
+			if (word.length() > 0 && r.nextInt(3) == 0) {
+				word.setLength(word.length() - 1);
+				for (TrieCursor cursor : cursors) {
+					cursor.pop();
+				}
+			} else {
+				char c = (char) ('A' + r.nextInt(6));
+				word.append(c);
+				for (TrieCursor cursor : cursors) {
+					cursor.push(c);
+				}
+			}
+
+			String s = word.toString();
+			for (TrieCursor cursor : cursors) {
+				Assert.assertEquals(s.length(), cursor.getDepth());
+				Assert.assertEquals(wt.contains(s), cursor.isWord());
+				Assert.assertEquals(wt.containsPrefix(s), cursor.isPrefix());
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.andrewpmsmith.movabletype.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.andrewpmsmith.movabletype.model.WordListImporter;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class WordListImporterTest extends TestCase {
+
+	private static final int WORD_COUNT = 20000;
+
+	/*
+	 * Returns a unique string of CAPITALS for each n
+	 */
+	private String word(int n) {
+		StringBuilder sb = new StringBuilder("W");
+		do {
+			sb.append((char) ('A' + n % 26));
+			n /= 26;
+		} while (n > 0);
+		return sb.toString();
+	}
+
+	/*
+	 * A word list with every word twice, some in lower case, and a few lines
+	 * that are not words
+	 */
+	private byte[] createSampleInput() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < WORD_COUNT; ++i) {
+			sb.append(word(i)).append('\n');
+			if (i % 7 == 0)
+				sb.append("not a word\n");
+			if (i % 11 == 0)
+				sb.append("X\n");
+		}
+		for (int i = WORD_COUNT - 1; i >= 0; --i) {
+			sb.append(word(i).toLowerCase()).append('\n');
+		}
+		return sb.toString().getBytes();
+	}
+
+	private static class CollectingSink implements WordListImporter.Sink,
+			WordListImporter.ProgressListener {
+
+		final Set<String> mWords = new HashSet<String>();
+		final List<Long> mProgress = new ArrayList<Long>();
+		int mWordsWritten;
+		boolean mBatchesSorted = true;
+
+		@Override
+		public void writeBatch(String[] words, int count) {
+			for (int i = 0; i < count; ++i) {
+				if (i > 0 && words[i - 1].compareTo(words[i]) >= 0)
+					mBatchesSorted = false;
+				mWords.add(words[i]);
+			}
+			mWordsWritten += count;
+		}
+
+		@Override
+		public void onProgress(long bytesRead, long totalBytes) {
+			mProgress.add(bytesRead);
+		}
+
+	}
+
+	/*
+	 * Test that every valid word reaches the sink, in sorted batches without
+	 * duplicates, and that progress increases until the end of the input
+	 */
+	public void test_importWords() throws IOException {
+
+		byte[] input = createSampleInput();
+		CollectingSink sink = new CollectingSink();
+
+		new WordListImporter(4, 500).run(new ByteArrayInputStream(input),
+				input.length, sink, sink);
+
+		Assert.assertEquals(WORD_COUNT, sink.mWords.size());
+		for (int i = 0; i < WORD_COUNT; ++i) {
+			Assert.assertTrue(sink.mWords.contains(word(i)));
+		}
+		Assert.assertTrue(sink.mBatchesSorted);
+
+		// Duplicates in different batches are left for the sink
+		Assert.assertTrue(sink.mWordsWritten >= WORD_COUNT);
+		Assert.assertTrue(sink.mWordsWritten <= 2 * WORD_COUNT);
+
+		Assert.assertFalse(sink.mProgress.isEmpty());
+		for (int i = 1; i < sink.mProgress.size(); ++i) {
+			Assert.assertTrue(sink.mProgress.get(i - 1) <= sink.mProgress.get(i));
+		}
+		Assert.assertEquals(input.length,
+				(long) sink.mProgress.get(sink.mProgress.size() - 1));
+
+	}
+
+	/*
+	 * Test that a failure in the sink is reported to the caller
+	 */
+	public void test_sinkError() {
+
+		byte[] input = createSampleInput();
+
+		try {
+			new WordListImporter(2, 100).run(new ByteArrayInputStream(input),
+					input.length, new WordListImporter.Sink() {
+
+						@Override
+						public void writeBatch(String[] words, int count)
+								throws IOException {
+							throw new IOException("Sink full");
+						}
+
+					}, null);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertEquals("Sink full", e.getMessage());
+		}
+
+	}
+
+	/*
+	 * Test that an unchecked exception in the sink stops the import and is
+	 * reported to the caller
+	 */
+	public void test_sinkRuntimeError() throws IOException {
+
+		byte[] input = createSampleInput();
+
+		try {
+			new WordListImporter(2, 100).run(new ByteArrayInputStream(input),
+					input.length, new WordListImporter.Sink() {
+
+						@Override
+						public void writeBatch(String[] words, int count) {
+							throw new IllegalStateException("Sink closed");
+						}
+
+					}, null);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("Sink closed", e.getMessage());
+		}
+
+	}
+
+	/*
+	 * Test that an unchecked exception on the reader thread does not leave
+	 * the import waiting forever, and is reported to the caller
+	 */
+	public void test_readerRuntimeError() throws IOException {
+
+		final byte[] input = createSampleInput();
+		InputStream is = new ByteArrayInputStream(input) {
+
+			@Override
+			public synchronized int read(byte[] buffer, int offset, int count) {
+				if (pos > input.length / 2)
+					throw new IllegalStateException("Stream failed");
+				return super.read(buffer, offset, count);
+			}
+
+		};
+
+		try {
+			new WordListImporter(4, 100).run(is, input.length,
+					new CollectingSink(), null);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("Stream failed", e.getMessage());
+		}
+
+	}
+
+}
@@ -1,5 +1,9 @@
 package com.andrewpmsmith.movabletype.test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 import junit.framework.Assert;
 import android.test.AndroidTestCase;
 
@@ -43,5 +47,35 @@ public class WordListTest extends AndroidTestCase {
 		// SQL injection attack
 		Assert.assertFalse(wl.wordInDictionary("; DROP TABLE words;"));
 	}
+	
+	public void test_lookupAll() {
+		WordList wl = WordList.getInstance(mContext);
+		Assert.assertSame(wl, WordList.getInstance(mContext));
+		
+		List<String> words = new ArrayList<String>();
+		words.add("AARDVARK");
+		words.add("ZOO");
+		words.add("ABCD");
+		words.add("zoo");
+		words.add("; DROP TABLE words;");
+		words.add(null);
+		
+		// More words than fit in a single query
+		for (int i = 0; i < 1500; ++i) {
+			words.add("QQ" + (char) ('A' + i % 26) + (char) ('A' + i / 26 % 26));
+		}
+		words.add("JOKE");
+		
+		Set<String> found = wl.lookupAll(words);
+		
+		Assert.assertEquals(3, found.size());
+		Assert.assertTrue(found.contains("AARDVARK"));
+		Assert.assertTrue(found.contains("ZOO"));
+		Assert.assertTrue(found.contains("JOKE"));
+		
+		// Single lookups still work after a batch
+		Assert.assertTrue(wl.wordInDictionary("ROOT"));
+		Assert.assertFalse(wl.wordInDictionary("ABCD"));
+	}
 
 }
@@ -1,5 +1,19 @@
 package com.andrewpmsmith.movabletype.test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.Serializer;
 import com.andrewpmsmith.movabletype.model.WordTrie;
 
 import junit.framework.Assert;
@@ -161,6 +175,82 @@ public class WordTrieTest extends TestCase {
 		
 	}
 	
+	/*
+	 * Test that words added in random order, and all of their prefixes, are
+	 * found, and that other strings are not
+	 */
+	public void test_randomWords() {
+
+		WordTrie wt = new WordTrie();
+		Set<String> words = new HashSet<String>();
+		Set<String> prefixes = new HashSet<String>();
+		Random r = new Random(10);
+
+		for (int i = 0; i < 2000; ++i) {
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + r.nextInt(8);
+			for (int j = 0; j < length; ++j) {
+				sb.append((char) ('A' + r.nextInt(26)));
+			}
+			String word = sb.toString();
+			Assert.assertTrue(wt.add(word) >= 0);
+			words.add(word);
+			for (int j = 0; j <= length; ++j) {
+				prefixes.add(word.substring(0, j));
+			}
+		}
+
+		for (int i = 0; i < 20000; ++i) {
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + r.nextInt(4);
+			for (int j = 0; j < length; ++j) {
+				sb.append((char) ('A' + r.nextInt(26)));
+			}
+			String s = sb.toString();
+			Assert.assertEquals(words.contains(s), wt.contains(s));
+			Assert.assertEquals(prefixes.contains(s), wt.containsPrefix(s));
+		}
+
+		// One node per distinct prefix, including the empty root
+		Assert.assertEquals(prefixes.size(), wt.getNodeCount());
+
+	}
+
+	/*
+	 * Test that a frozen trie answers lookups exactly as the trie did, with
+	 * fewer nodes
+	 */
+	public void test_freeze() {
+
+		WordTrie wt = new WordTrie();
+		String[] words = { "DOTS", "CATS", "DOG", "CAT", "DOGS", "DOT", "ZOO" };
+		for (String word : words) {
+			wt.add(word);
+		}
+
+		Dawg dawg = wt.freeze();
+
+		Assert.assertEquals(words.length, dawg.getWordCount());
+		Assert.assertTrue(dawg.getNodeCount() < wt.getNodeCount());
+
+		final String[] queries = { "", "C", "CA", "CAT", "CATS", "CATSS", "D",
+				"DO", "DOG", "DOGE", "DOTS", "Z", "ZO", "ZOO", "ZOOS", "B",
+				"cat" };
+		for (String query : queries) {
+			Assert.assertEquals(query, wt.contains(query),
+					dawg.wordInDictionary(query));
+			Assert.assertEquals(query, wt.containsPrefix(query),
+					dawg.containsPrefix(query));
+		}
+		Assert.assertFalse(dawg.containsPrefix(null));
+
+		// Freezing does not change the trie
+		wt.add("ANT");
+		Assert.assertTrue(wt.contains("ANT"));
+		Assert.assertFalse(dawg.wordInDictionary("ANT"));
+
+	}
+
 	public void test_serialization() {
 		WordTrie wt = new WordTrie();
 		wt.add("WORD");
@@ -176,4 +266,122 @@ public class WordTrieTest extends TestCase {
 		
 	}
 
+	/*
+	 * Test that the binary format keeps every word, and that the next word
+	 * added gets the same index as it would have in the original trie
+	 */
+	public void test_codec() throws IOException {
+
+		WordTrie wt = new WordTrie();
+		Random r = new Random(12);
+		List<String> words = new ArrayList<String>();
+		for (int i = 0; i < 500; ++i) {
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + r.nextInt(8);
+			for (int j = 0; j < length; ++j) {
+				sb.append((char) ('A' + r.nextInt(26)));
+			}
+			words.add(sb.toString());
+		}
+
+		for (String word : words) {
+			wt.add(word);
+		}
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		wt.write(bos);
+		WordTrie n = WordTrie.read(new ByteArrayInputStream(bos.toByteArray()));
+
+		Assert.assertEquals(wt.getNodeCount(), n.getNodeCount());
+		for (String word : words) {
+			Assert.assertTrue(n.contains(word));
+		}
+		Assert.assertFalse(n.contains("ZZZZZZZZZ"));
+		Assert.assertEquals(wt.add("ZZZZZZZZZ"), n.add("ZZZZZZZZZ"));
+
+		// An empty trie
+		WordTrie empty = WordTrie.deserialize(new WordTrie().serialize());
+		Assert.assertNotNull(empty);
+		Assert.assertFalse(empty.containsPrefix("A"));
+		Assert.assertEquals(0, empty.add("A"));
+
+		// Java serialization uses the same format
+		bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(wt);
+		oos.close();
+		Assert.assertTrue(bos.size() < wt.serialize().length + 100);
+		WordTrie copy = (WordTrie) Serializer.deserialize(bos.toByteArray());
+		Assert.assertNotNull(copy);
+		for (String word : words) {
+			Assert.assertTrue(copy.contains(word));
+		}
+
+		// Corrupt data is rejected
+		Assert.assertNull(WordTrie.deserialize(new byte[] { 1, 2, 3, 4, 5 }));
+		byte[] s = wt.serialize();
+		byte[] truncated = new byte[s.length / 2];
+		System.arraycopy(s, 0, truncated, 0, truncated.length);
+		Assert.assertNull(WordTrie.deserialize(truncated));
+
+	}
+
+	/*
+	 * The trie as it was saved before the binary format: a tree of nodes,
+	 * each with a map from letter to child, written by Java serialization
+	 */
+	private static final class OriginalNode implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private int mIndex = -1;
+		private HashMap<Integer, OriginalNode> mLetters;
+
+		private void add(String word, int index) {
+			OriginalNode node = this;
+			for (int i = 0; i < word.length(); ++i) {
+				if (node.mLetters == null)
+					node.mLetters = new HashMap<Integer, OriginalNode>();
+				int letter = word.charAt(i) - 'A';
+				OriginalNode next = node.mLetters.get(letter);
+				if (next == null) {
+					next = new OriginalNode();
+					node.mLetters.put(letter, next);
+				}
+				node = next;
+			}
+			node.mIndex = index;
+		}
+
+	}
+
+	/*
+	 * Test that the binary format is at least ten times smaller than the
+	 * original format for a game's played words
+	 */
+	public void test_codecSize() {
+
+		// Roughly the number of words played in a game
+		WordTrie wt = new WordTrie();
+		OriginalNode original = new OriginalNode();
+		Random r = new Random(13);
+		for (int i = 0; i < 40; ++i) {
+			StringBuilder sb = new StringBuilder();
+			int length = 3 + r.nextInt(6);
+			for (int j = 0; j < length; ++j) {
+				sb.append((char) ('A' + r.nextInt(26)));
+			}
+			String word = sb.toString();
+			original.add(word, wt.add(word));
+		}
+
+		byte[] codec = wt.serialize();
+		byte[] java = Serializer.serialize(original);
+		Assert.assertNotNull(WordTrie.deserialize(codec));
+		Assert.assertNotNull(Serializer.deserialize(java));
+
+		Assert.assertTrue(codec.length * 10 <= java.length);
+
+	}
+
 }
@@ -0,0 +1,84 @@
+package com.andrewpmsmith.movabletype.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.andrewpmsmith.movabletype.model.BloomFilter;
+import com.andrewpmsmith.movabletype.model.Dawg;
+import com.andrewpmsmith.movabletype.model.WordListReader;
+
+/**
+ * Build time tool that compiles the plain text word list into the binary
+ * files loaded by the app at runtime. Words are normalised, sorted and
+ * deduplicated exactly as they would be for the SQLite word list.
+ *
+ * Usage: DictionaryCompiler <wordlist.txt> <output dir> [bloom false positive rate]
+ *
+ * Writes dictionary.bin and dictionary_bloom.bin to the output directory.
+ */
+public final class DictionaryCompiler {
+
+	private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: DictionaryCompiler <wordlist.txt> "
+					+ "<output dir> [bloom false positive rate]");
+			System.exit(1);
+		}
+
+		File outputDir = new File(args[1]);
+		double falsePositiveRate = (args.length > 2) ? Double
+				.parseDouble(args[2]) : DEFAULT_FALSE_POSITIVE_RATE;
+
+		List<String> words = WordListReader.readWords(new FileInputStream(
+				args[0]));
+
+		Dawg.Builder builder = new Dawg.Builder();
+		BloomFilter bloomFilter = BloomFilter.create(words.size(),
+				falsePositiveRate);
+		for (String word : words) {
+			builder.add(word);
+			bloomFilter.add(word);
+		}
+		Dawg dawg = builder.build();
+
+		OutputStream os = open(outputDir, "dictionary.bin");
+		try {
+			dawg.write(os);
+		} finally {
+			os.close();
+		}
+
+		os = open(outputDir, "dictionary_bloom.bin");
+		try {
+			bloomFilter.write(os);
+		} finally {
+			os.close();
+		}
+
+		System.out.println("Compiled " + dawg.getWordCount() + " words into "
+				+ dawg.getNodeCount() + " nodes, Bloom filter "
+				+ bloomFilter.getBitCount() + " bits with "
+				+ bloomFilter.getHashCount() + " hashes");
+
+	}
+
+	private static OutputStream open(File dir, String name)
+			throws IOException {
+		return new BufferedOutputStream(new FileOutputStream(new File(dir,
+				name)));
+	}
+
+	// Suppress default constructor for noninstantiability
+	private DictionaryCompiler() {
+		throw new AssertionError();
+	}
+
+}